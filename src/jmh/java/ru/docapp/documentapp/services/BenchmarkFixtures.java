@@ -0,0 +1,50 @@
+package ru.docapp.documentapp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.SpecificationDto;
+import ru.docapp.documentapp.entities.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static DocumentDto documentDto(int specifications, boolean withIds) {
+        List<SpecificationDto> specs = new ArrayList<>(specifications);
+        for (int i = 1; i <= specifications; i++) {
+            specs.add(new SpecificationDto(
+                    withIds ? (long) i : null,
+                    "Позиция спецификации " + i,
+                    BigDecimal.valueOf(i * 137L, 2)
+            ));
+        }
+        return new DocumentDto(null, "BENCH-" + specifications, LocalDate.of(2025, 11, 25), null,
+                "Документ для замеров", specs);
+    }
+
+    static Document document(int specifications) {
+        Document doc = DocumentService.mapFromDto(documentDto(specifications, false));
+        doc.setId(1L);
+        doc.setVersion(0L);
+        for (int i = 0; i < specifications; i++) {
+            doc.getSpecifications().get(i).setId((long) i + 1);
+        }
+        return doc;
+    }
+
+    // mirrors the Boot-configured mapper: JavaTimeModule on, dates as ISO strings
+    static ObjectMapper objectMapper() {
+        return JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+}
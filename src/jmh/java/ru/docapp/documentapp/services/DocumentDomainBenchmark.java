@@ -0,0 +1,67 @@
+package ru.docapp.documentapp.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+import ru.docapp.documentapp.entities.Document;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentDomainBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    private int specifications;
+
+    private DocumentService documentService;
+    private DocumentDto createDto;
+    private DocumentDto updateDto;
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        // syncSpecifications touches the repository only when a removed name is re-added, which never happens here
+        documentService = new DocumentService(null, null, null, null, null, null, null, null, null, null);
+        createDto = BenchmarkFixtures.documentDto(specifications, false);
+        updateDto = BenchmarkFixtures.documentDto(specifications, true);
+        document = BenchmarkFixtures.document(specifications);
+    }
+
+    @Benchmark
+    public BigDecimal recalculateAmount() {
+        document.recalculateAmount();
+        return document.getAmount();
+    }
+
+    @Benchmark
+    public Document mapFromDto() {
+        return DocumentService.mapFromDto(createDto);
+    }
+
+    @Benchmark
+    public Document syncSpecifications() {
+        documentService.syncSpecifications(document, updateDto.specifications());
+        return document;
+    }
+
+    @Benchmark
+    public DocumentResponseDto toResponseDto() {
+        return DocumentService.toResponseDto(document);
+    }
+}
@@ -0,0 +1,65 @@
+package ru.docapp.documentapp.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+import ru.docapp.documentapp.entities.Document;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentSerializationBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    private int specifications;
+
+    private ObjectMapper objectMapper;
+    private CBORFactory cborFactory;
+    private Document document;
+    private DocumentResponseDto response;
+
+    @Setup
+    public void setUp() {
+        objectMapper = BenchmarkFixtures.objectMapper();
+        cborFactory = new CBORFactory();
+        document = BenchmarkFixtures.document(specifications);
+        response = DocumentService.toResponseDto(document);
+    }
+
+    @Benchmark
+    public byte[] serializeEntity() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(document);
+    }
+
+    @Benchmark
+    public byte[] serializeResponseDto() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] writeResponseDto() {
+        return DocumentJsonWriter.toBytes(objectMapper.getFactory(), response);
+    }
+
+    @Benchmark
+    public byte[] writeResponseDtoCbor() {
+        return DocumentJsonWriter.toBytes(cborFactory, response);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.docapp.documentapp.load;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+record LoadTestConfig(
+        int documents,
+        int specifications,
+        int clients,
+        Duration warmup,
+        Duration duration,
+        Map<Operation, Integer> mix,
+        String jdbcUrl,
+        Path report
+) {
+
+    static LoadTestConfig fromSystemProperties() {
+        String jdbcUrl = System.getProperty("load.jdbc-url", "");
+        return new LoadTestConfig(
+                Integer.getInteger("load.documents", 10_000),
+                Integer.getInteger("load.specifications", 10),
+                Integer.getInteger("load.clients", 32),
+                DurationStyle.detectAndParse(System.getProperty("load.warmup", "10s")),
+                DurationStyle.detectAndParse(System.getProperty("load.duration", "60s")),
+                parseMix(System.getProperty("load.mix", "create=10,read=50,update=15,delete=5,list=20")),
+                jdbcUrl.isBlank() ? null : jdbcUrl,
+                Path.of(System.getProperty("load.report", "target/load-test/report.json"))
+        );
+    }
+
+    static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : value.split(",")) {
+            String[] pair = part.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid load.mix entry: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in load.mix: " + part);
+            }
+            mix.put(Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), weight);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("load.mix has no positive weights: " + value);
+        }
+        return mix;
+    }
+
+    enum Operation {
+        CREATE, READ, UPDATE, DELETE, LIST
+    }
+}
@@ -0,0 +1,375 @@
+package ru.docapp.documentapp.load;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.docapp.documentapp.DocumentAppApplication;
+import ru.docapp.documentapp.dto.BatchItemResult;
+import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.SpecificationDto;
+import ru.docapp.documentapp.load.LoadTestConfig.Operation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Boots the application against an embedded PostgreSQL (or load.jdbc-url), seeds the registry,
+ * drives a weighted CRUD/list mix from concurrent clients and writes per-operation latencies to JSON.
+ */
+public final class LoadTestRunner {
+
+    private static final int SEED_CHUNK = 500;
+    private static final int LIST_LIMIT = 50;
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final LoadTestConfig config;
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .build();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final DocumentPool pool = new DocumentPool();
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final String runId = Long.toString(System.currentTimeMillis(), 36).toUpperCase();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Operation[] wheel;
+    private URI baseUri;
+
+    private LoadTestRunner(LoadTestConfig config) {
+        this.config = config;
+        List<Operation> operations = new ArrayList<>();
+        config.mix().forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                operations.add(operation);
+            }
+        });
+        this.wheel = operations.toArray(Operation[]::new);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTestRunner(LoadTestConfig.fromSystemProperties()).run();
+    }
+
+    private void run() throws Exception {
+        EmbeddedPostgres postgres = config.jdbcUrl() == null ? EmbeddedPostgres.start() : null;
+        try {
+            // passed as command-line arguments so they take precedence over application.yml
+            List<String> arguments = new ArrayList<>(List.of(
+                    "--server.port=0",
+                    "--spring.main.banner-mode=off",
+                    "--spring.jpa.show-sql=false",
+                    "--logging.level.root=WARN",
+                    "--spring.datasource.hikari.maximum-pool-size=" + Math.max(20, config.clients())
+            ));
+            if (postgres != null) {
+                arguments.add("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres")
+                        + "&reWriteBatchedInserts=true");
+                arguments.add("--spring.datasource.username=postgres");
+                arguments.add("--spring.datasource.password=");
+            } else {
+                arguments.add("--spring.datasource.url=" + config.jdbcUrl());
+            }
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DocumentAppApplication.class)
+                    .run(arguments.toArray(String[]::new))) {
+                baseUri = URI.create("http://localhost:"
+                        + context.getEnvironment().getRequiredProperty("local.server.port") + "/api/documents");
+                Duration seeding = seed();
+                Duration measured = drive();
+                writeReport(seeding, measured);
+            }
+        } finally {
+            if (postgres != null) {
+                postgres.close();
+            }
+        }
+    }
+
+    private Duration seed() throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        for (int offset = 0; offset < config.documents(); offset += SEED_CHUNK) {
+            int size = Math.min(SEED_CHUNK, config.documents() - offset);
+            List<DocumentDto> chunk = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                chunk.add(newDocument());
+            }
+            HttpResponse<byte[]> response = send(HttpRequest.newBuilder(URI.create(baseUri + "/batch"))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(chunk))));
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Seeding failed with status " + response.statusCode());
+            }
+            for (BatchItemResult item : mapper.readValue(response.body(), new TypeReference<List<BatchItemResult>>() {})) {
+                if (item.id() != null) {
+                    pool.add(new PooledDocument(item.id(), item.number()));
+                }
+            }
+        }
+        Duration seeding = Duration.ofNanos(System.nanoTime() - started);
+        System.out.printf("Seeded %d documents in %d ms%n", pool.size(), seeding.toMillis());
+        return seeding;
+    }
+
+    private Duration drive() throws InterruptedException {
+        long started = System.nanoTime();
+        long measureFrom = started + config.warmup().toNanos();
+        long deadline = measureFrom + config.duration().toNanos();
+
+        ExecutorService clients = Executors.newFixedThreadPool(config.clients());
+        for (int i = 0; i < config.clients(); i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    execute(wheel[ThreadLocalRandom.current().nextInt(wheel.length)]);
+                }
+            });
+        }
+        clients.shutdown();
+
+        TimeUnit.NANOSECONDS.sleep(measureFrom - System.nanoTime());
+        stats.values().forEach(OperationStats::reset);
+        long measuring = System.nanoTime();
+        if (!clients.awaitTermination(config.duration().toSeconds() + 60, TimeUnit.SECONDS)) {
+            clients.shutdownNow();
+        }
+        return Duration.ofNanos(System.nanoTime() - measuring);
+    }
+
+    private void execute(Operation operation) {
+        PooledDocument target = null;
+        if (operation == Operation.READ || operation == Operation.UPDATE) {
+            target = pool.random();
+        } else if (operation == Operation.DELETE) {
+            target = pool.take();
+        }
+        if (target == null && operation != Operation.LIST) {
+            operation = Operation.CREATE;
+        }
+
+        long started = System.nanoTime();
+        int status;
+        try {
+            HttpResponse<byte[]> response = send(request(operation, target));
+            status = response.statusCode();
+            if (operation == Operation.CREATE && status == 201) {
+                JsonNode created = mapper.readTree(response.body());
+                pool.add(new PooledDocument(created.get("id").asLong(), created.get("number").asText()));
+            }
+        } catch (IOException e) {
+            status = -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        stats.get(operation).record(System.nanoTime() - started, status);
+    }
+
+    private HttpRequest.Builder request(Operation operation, PooledDocument target) throws IOException {
+        return switch (operation) {
+            case CREATE -> HttpRequest.newBuilder(baseUri)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(newDocument())));
+            case READ -> HttpRequest.newBuilder(uriOf(target)).GET();
+            case UPDATE -> HttpRequest.newBuilder(uriOf(target))
+                    .PUT(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(document(target.number()))));
+            case DELETE -> HttpRequest.newBuilder(uriOf(target)).DELETE();
+            case LIST -> HttpRequest.newBuilder(URI.create(baseUri + "?limit=" + LIST_LIMIT)).GET();
+        };
+    }
+
+    private URI uriOf(PooledDocument target) {
+        return URI.create(baseUri + "/" + target.id());
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return http.send(request.header("Content-Type", "application/json")
+                        .timeout(Duration.ofSeconds(30))
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private DocumentDto newDocument() {
+        return document("LOAD-" + runId + "-" + sequence.incrementAndGet());
+    }
+
+    private DocumentDto document(String number) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<SpecificationDto> specs = new ArrayList<>(config.specifications());
+        for (int i = 1; i <= config.specifications(); i++) {
+            specs.add(new SpecificationDto(null, "Позиция " + i + "." + random.nextInt(1, 20),
+                    BigDecimal.valueOf(random.nextLong(1, 1_000_000), 2)));
+        }
+        return new DocumentDto(null, number, LocalDate.now().minusDays(random.nextInt(365)), null,
+                "Нагрузочный тест " + runId, specs);
+    }
+
+    private void writeReport(Duration seeding, Duration measured) throws IOException {
+        double seconds = measured.toNanos() / 1e9;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        long total = 0;
+        System.out.printf("%-8s %9s %9s %7s %9s %9s %9s %9s %9s%n",
+                "op", "count", "rejected", "errors", "rps", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            OperationStats.Snapshot snapshot = entry.getValue().snapshot();
+            if (snapshot.count() == 0) {
+                continue;
+            }
+            total += snapshot.count();
+            Histogram h = snapshot.latencies();
+            Map<String, Object> op = new LinkedHashMap<>();
+            op.put("count", snapshot.count());
+            op.put("ok", snapshot.ok());
+            op.put("rejected", snapshot.rejected());
+            op.put("errors", snapshot.errors());
+            op.put("statuses", snapshot.statuses());
+            op.put("throughput", round(snapshot.count() / seconds));
+            op.put("p50Ms", millis(h.getValueAtPercentile(50)));
+            op.put("p95Ms", millis(h.getValueAtPercentile(95)));
+            op.put("p99Ms", millis(h.getValueAtPercentile(99)));
+            op.put("maxMs", millis(h.getMaxValue()));
+            operations.put(entry.getKey().name().toLowerCase(), op);
+            System.out.printf("%-8s %9d %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey().name().toLowerCase(), snapshot.count(), snapshot.rejected(), snapshot.errors(),
+                    snapshot.count() / seconds, millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(95)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getMaxValue()));
+        }
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("documents", config.documents());
+        settings.put("specifications", config.specifications());
+        settings.put("clients", config.clients());
+        settings.put("warmup", config.warmup().toString());
+        settings.put("duration", config.duration().toString());
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        config.mix().forEach((operation, weight) -> mix.put(operation.name().toLowerCase(), weight));
+        settings.put("mix", mix);
+        settings.put("database", config.jdbcUrl() == null ? "embedded" : config.jdbcUrl());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now());
+        report.put("java", Runtime.version().toString());
+        report.put("processors", Runtime.getRuntime().availableProcessors());
+        report.put("config", settings);
+        report.put("seedingMs", seeding.toMillis());
+        report.put("measuredMs", measured.toMillis());
+        report.put("throughput", round(total / seconds));
+        report.put("operations", operations);
+
+        Files.createDirectories(config.report().toAbsolutePath().getParent());
+        mapper.writeValue(config.report().toFile(), report);
+        System.out.printf("Total %.1f rps, report written to %s%n", total / seconds, config.report().toAbsolutePath());
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private record PooledDocument(long id, String number) {
+    }
+
+    private static final class DocumentPool {
+
+        private final List<PooledDocument> documents = new ArrayList<>();
+
+        synchronized void add(PooledDocument document) {
+            documents.add(document);
+        }
+
+        synchronized int size() {
+            return documents.size();
+        }
+
+        synchronized PooledDocument random() {
+            return documents.isEmpty() ? null : documents.get(ThreadLocalRandom.current().nextInt(documents.size()));
+        }
+
+        synchronized PooledDocument take() {
+            if (documents.isEmpty()) {
+                return null;
+            }
+            int index = ThreadLocalRandom.current().nextInt(documents.size());
+            PooledDocument last = documents.remove(documents.size() - 1);
+            return index == documents.size() ? last : documents.set(index, last);
+        }
+    }
+
+    private static final class OperationStats {
+
+        private final Recorder latencies = new Recorder(MAX_LATENCY_NANOS, 3);
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        void record(long nanos, int status) {
+            latencies.recordValue(Math.min(nanos, MAX_LATENCY_NANOS));
+            statuses.computeIfAbsent(status, k -> new LongAdder()).increment();
+            if (status >= 200 && status < 300) {
+                ok.increment();
+            } else if (status == 404 || status == 409 || status == 412) {
+                // clients race each other on the shared pool, so a document may already be gone or changed
+                rejected.increment();
+            } else {
+                errors.increment();
+            }
+        }
+
+        void reset() {
+            latencies.reset();
+            ok.reset();
+            rejected.reset();
+            errors.reset();
+            statuses.clear();
+        }
+
+        Snapshot snapshot() {
+            Histogram histogram = latencies.getIntervalHistogram();
+            long okCount = ok.sum();
+            long rejectedCount = rejected.sum();
+            long errorCount = errors.sum();
+            Map<String, Long> byStatus = new TreeMap<>();
+            statuses.forEach((status, count) -> byStatus.put(status < 0 ? "io-error" : status.toString(), count.sum()));
+            return new Snapshot(histogram, okCount + rejectedCount + errorCount, okCount, rejectedCount, errorCount,
+                    byStatus);
+        }
+
+        record Snapshot(Histogram latencies, long count, long ok, long rejected, long errors,
+                        Map<String, Long> statuses) {
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package ru.docapp.documentapp.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Starts the packaged application as a separate JVM in several startup modes and records, for each run, the time
+ * from process start to the first successful GET /api/documents and the startup time Spring Boot logs.
+ */
+public final class StartupBenchmark {
+
+    private static final Pattern STARTED = Pattern.compile("Started \\S+ in ([0-9.]+) seconds");
+    private static final Duration TIMEOUT = Duration.ofMinutes(3);
+    private static final long POLL_MILLIS = 10;
+
+    private final Path jar;
+    private final int runs;
+    private final List<String> modes;
+    private final String jdbcUrl;
+    private final Path report;
+    private final Path logs;
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .build();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+    private List<String> database;
+
+    private StartupBenchmark() {
+        String url = System.getProperty("startup.jdbc-url", "");
+        this.jar = Path.of(System.getProperty("startup.jar", "target/app/DocumentApp-0.0.1-SNAPSHOT.jar"));
+        this.runs = Integer.getInteger("startup.runs", 5);
+        this.modes = List.of(System.getProperty("startup.modes", "default,lazy,no-liquibase,cds,aot,fast").split(","));
+        this.jdbcUrl = url.isBlank() ? null : url;
+        this.report = Path.of(System.getProperty("startup.report", "target/startup/report.json"));
+        this.logs = report.resolveSibling("logs");
+    }
+
+    public static void main(String[] args) throws Exception {
+        new StartupBenchmark().run();
+    }
+
+    private void run() throws Exception {
+        if (!Files.exists(jar)) {
+            throw new IllegalStateException(jar + " not found, build it with: mvn -Pfast-startup package");
+        }
+        Files.createDirectories(logs);
+        EmbeddedPostgres postgres = jdbcUrl == null ? EmbeddedPostgres.start() : null;
+        try {
+            database = postgres == null
+                    ? List.of("--spring.datasource.url=" + jdbcUrl)
+                    : List.of("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                    "--spring.datasource.username=postgres",
+                    "--spring.datasource.password=");
+            migrate();
+
+            Map<String, Object> results = new LinkedHashMap<>();
+            for (String mode : modes) {
+                results.put(mode, measure(mode.trim()));
+            }
+            Map<String, Object> output = new LinkedHashMap<>();
+            output.put("jar", jar.toString());
+            output.put("java", System.getProperty("java.version"));
+            output.put("cpus", Runtime.getRuntime().availableProcessors());
+            output.put("runs", runs);
+            output.put("modes", results);
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            mapper.writeValue(report.toFile(), output);
+            System.out.println("Report written to " + report.toAbsolutePath());
+        } finally {
+            if (postgres != null) {
+                postgres.close();
+            }
+        }
+    }
+
+    /**
+     * Applies the changelog the way a separate migration job would, so modes without Liquibase find the schema.
+     */
+    private void migrate() throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of("java", "-Dspring.context.exit=onRefresh", "-jar", jar.toString(),
+                "--spring.main.web-application-type=none"));
+        command.addAll(database);
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logs.resolve("migrate.log").toFile())
+                .start();
+        if (!process.waitFor(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS) || process.exitValue() != 0) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Migration run failed, see " + logs.resolve("migrate.log"));
+        }
+    }
+
+    private Map<String, Object> measure(String mode) throws IOException, InterruptedException {
+        List<String> jvmArgs = new ArrayList<>();
+        List<String> appArgs = new ArrayList<>();
+        switch (mode) {
+            case "default" -> {
+            }
+            case "lazy" -> appArgs.add("--spring.main.lazy-initialization=true");
+            case "no-liquibase" -> appArgs.add("--spring.liquibase.enabled=false");
+            case "cds" -> jvmArgs.add("-XX:SharedArchiveFile=" + jar.resolveSibling("application.jsa"));
+            case "aot" -> jvmArgs.add("-Dspring.aot.enabled=true");
+            case "fast" -> {
+                jvmArgs.add("-XX:SharedArchiveFile=" + jar.resolveSibling("application.jsa"));
+                jvmArgs.add("-Dspring.aot.enabled=true");
+                appArgs.add("--spring.main.lazy-initialization=true");
+                appArgs.add("--spring.liquibase.enabled=false");
+            }
+            default -> throw new IllegalArgumentException("Unknown startup mode: " + mode);
+        }
+
+        List<Long> firstRequest = new ArrayList<>();
+        List<Long> started = new ArrayList<>();
+        for (int i = 1; i <= runs; i++) {
+            Path log = logs.resolve(mode + "-" + i + ".log");
+            long millis = startOnce(jvmArgs, appArgs, log);
+            firstRequest.add(millis);
+            Matcher matcher = STARTED.matcher(Files.readString(log));
+            if (matcher.find()) {
+                started.add(Math.round(Double.parseDouble(matcher.group(1)) * 1000));
+            }
+            System.out.printf("%-13s run %d: first request after %d ms%n", mode, i, millis);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("jvmArgs", jvmArgs);
+        result.put("appArgs", appArgs);
+        result.put("firstRequestMs", firstRequest);
+        result.put("firstRequestMedianMs", median(firstRequest));
+        result.put("startedInMedianMs", started.isEmpty() ? null : median(started));
+        System.out.printf("%-13s median: first request %d ms, Spring Boot started in %s ms%n",
+                mode, median(firstRequest), started.isEmpty() ? "?" : median(started));
+        return result;
+    }
+
+    private long startOnce(List<String> jvmArgs, List<String> appArgs, Path log) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.addAll(jvmArgs);
+        command.addAll(List.of("-jar", jar.toString(), "--server.port=" + port, "--spring.jpa.show-sql=false"));
+        command.addAll(database);
+        command.addAll(appArgs);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/documents?limit=1"))
+                .timeout(TIMEOUT)
+                .build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            long deadline = start + TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited with " + process.exitValue() + ", see " + log);
+                }
+                try {
+                    if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (ConnectException e) {
+                    // not listening yet
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+            throw new IllegalStateException("No successful request within " + TIMEOUT + ", see " + log);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = values.stream().sorted().toList();
+        return sorted.get(sorted.size() / 2);
+    }
+}
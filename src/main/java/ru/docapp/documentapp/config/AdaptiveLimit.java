@@ -0,0 +1,110 @@
+package ru.docapp.documentapp.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit that follows latency: while requests take about as long as they usually do, the limit creeps
+ * up, and when they slow down past {@code tolerance} times the long-term average it shrinks towards the rate the
+ * database still keeps up with. The estimate is the gradient rule of Netflix concurrency-limits (Gradient2).
+ */
+public class AdaptiveLimit {
+
+    static final int WINDOW_SAMPLES = 10;
+    private static final double LONG_WINDOW = 100;
+    private static final double SMOOTHING = 0.2;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile int limit;
+
+    // window state, guarded by this
+    private double estimate;
+    private double longRtt;
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    public AdaptiveLimit(String name, int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+        this.estimate = limit;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a permit and feeds the request latency into the limit estimate.
+     */
+    public void release(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            windowRttSum += rttNanos;
+            windowMaxInFlight = Math.max(windowMaxInFlight, current);
+            if (++windowSamples >= WINDOW_SAMPLES) {
+                update((double) windowRttSum / windowSamples);
+                windowRttSum = 0;
+                windowSamples = 0;
+                windowMaxInFlight = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns a permit without a latency sample, for requests whose duration says nothing about the database,
+     * such as streams that keep the connection open.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    private void update(double shortRtt) {
+        longRtt = longRtt == 0 ? shortRtt : longRtt + (shortRtt - longRtt) / LONG_WINDOW;
+        if (longRtt / shortRtt > 2) {
+            // load has dropped sharply, let the baseline follow so the limit can grow back quickly
+            longRtt *= 0.95;
+        }
+        if (windowMaxInFlight < estimate / 2) {
+            // the budget was not the bottleneck in this window, nothing to learn
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double next = estimate * gradient + Math.sqrt(estimate);
+        estimate = Math.max(minLimit, Math.min(maxLimit, estimate * (1 - SMOOTHING) + next * SMOOTHING));
+        limit = (int) estimate;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,169 @@
+package ru.docapp.documentapp.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.docapp.documentapp.exceptions.ServiceOverloadedException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulkheads in front of the document API: every handler method gets its own adaptive concurrency budget, separately
+ * for reads and writes, so a slow export or listing cannot use up the budget of GET /{id}. A request over budget
+ * fails fast with 503 instead of queueing on a Tomcat thread for a pool connection.
+ */
+@Component
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionControl implements WebMvcConfigurer, AsyncHandlerInterceptor, MeterBinder {
+
+    public static final String REJECTED = "documents.requests.rejected";
+
+    private static final String PERMIT = AdmissionControl.class.getName() + ".permit";
+    private static final String STARTED = AdmissionControl.class.getName() + ".started";
+
+    private final AdmissionProperties properties;
+    private final Map<String, AdaptiveLimit> budgets = new ConcurrentHashMap<>();
+    private final AtomicLong connectionTimeouts = new AtomicLong();
+    // budgets are created on first use; guarded by budgets
+    private MeterRegistry registry;
+
+    public AdmissionControl(AdmissionProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (properties.enabled()) {
+            registry.addInterceptor(this).addPathPatterns("/api/documents", "/api/documents/**");
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        AdaptiveLimit budget = budget(handler, read);
+        if (!budget.tryAcquire()) {
+            throw new ServiceOverloadedException(
+                    "Too many concurrent " + budget.getName() + " requests (limit " + budget.getLimit() + ")",
+                    properties.retryAfter());
+        }
+        request.setAttribute(PERMIT, budget);
+        request.setAttribute(STARTED, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // exports and change streams run for minutes; their length says nothing about database latency
+        if (request.getAttribute(PERMIT) instanceof AdaptiveLimit budget) {
+            request.removeAttribute(PERMIT);
+            budget.release();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT) instanceof AdaptiveLimit budget) {
+            request.removeAttribute(PERMIT);
+            budget.release(System.nanoTime() - (long) request.getAttribute(STARTED));
+        }
+    }
+
+    /**
+     * Records a request that gave up waiting for a pool connection and returns when the client should retry.
+     */
+    public Duration connectionTimedOut() {
+        connectionTimeouts.incrementAndGet();
+        return properties.retryAfter();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        List<AdaptiveLimit> existing;
+        synchronized (budgets) {
+            this.registry = registry;
+            existing = new ArrayList<>(budgets.values());
+        }
+        existing.forEach(budget -> register(registry, budget));
+        FunctionCounter.builder(REJECTED, connectionTimeouts, AtomicLong::get)
+                .description("Document API requests rejected with 503")
+                .tag("budget", "connection-pool")
+                .tag("access", "any")
+                .register(registry);
+    }
+
+    /**
+     * Returns the budget of the handler method for reads or writes, creating it on first use. Handlers that are not
+     * controller methods share one budget per access kind.
+     */
+    private AdaptiveLimit budget(Object handler, boolean read) {
+        String controller = "other";
+        String method = "other";
+        if (handler instanceof HandlerMethod handlerMethod) {
+            String type = handlerMethod.getBeanType().getSimpleName();
+            controller = Character.toLowerCase(type.charAt(0)) + type.substring(1).replaceFirst("Controller$", "");
+            method = handlerMethod.getMethod().getName();
+        }
+        String name = controller + "." + method + (read ? ":read" : ":write");
+        AdaptiveLimit budget = budgets.get(name);
+        if (budget != null) {
+            return budget;
+        }
+        AdmissionProperties.Budget limits = properties.budget(controller, method, read);
+        MeterRegistry boundTo;
+        synchronized (budgets) {
+            budget = budgets.get(name);
+            if (budget != null) {
+                return budget;
+            }
+            budget = new AdaptiveLimit(name, limits.initialLimit(), limits.minLimit(), limits.maxLimit(),
+                    properties.latencyTolerance());
+            budgets.put(name, budget);
+            boundTo = registry;
+        }
+        if (boundTo != null) {
+            register(boundTo, budget);
+        }
+        return budget;
+    }
+
+    private static void register(MeterRegistry registry, AdaptiveLimit budget) {
+        String name = budget.getName();
+        String endpoint = name.substring(0, name.lastIndexOf(':'));
+        String access = name.substring(name.lastIndexOf(':') + 1);
+        Gauge.builder("documents.requests.limit", budget, AdaptiveLimit::getLimit)
+                .description("Current concurrency limit of the document API budget")
+                .tag("budget", endpoint)
+                .tag("access", access)
+                .register(registry);
+        Gauge.builder("documents.requests.in-flight", budget, AdaptiveLimit::getInFlight)
+                .description("Document API requests holding a budget permit")
+                .tag("budget", endpoint)
+                .tag("access", access)
+                .register(registry);
+        FunctionCounter.builder(REJECTED, budget, AdaptiveLimit::getRejected)
+                .description("Document API requests rejected with 503")
+                .tag("budget", endpoint)
+                .tag("access", access)
+                .register(registry);
+    }
+}
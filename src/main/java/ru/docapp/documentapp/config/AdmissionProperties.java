@@ -0,0 +1,30 @@
+package ru.docapp.documentapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "app.admission")
+public record AdmissionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1s") Duration retryAfter,
+        @DefaultValue("2.0") double latencyTolerance,
+        @DefaultValue Budget read,
+        @DefaultValue Budget write,
+        // controller (without the Controller suffix) -> handler method -> budget replacing the read/write default
+        @DefaultValue Map<String, Map<String, Budget>> endpoints
+) {
+
+    public Budget budget(String controller, String method, boolean read) {
+        Budget budget = endpoints.getOrDefault(controller, Map.of()).get(method);
+        return budget != null ? budget : read ? read() : write();
+    }
+
+    public record Budget(
+            @DefaultValue("20") int initialLimit,
+            @DefaultValue("4") int minLimit,
+            @DefaultValue("200") int maxLimit
+    ) {}
+}
@@ -0,0 +1,13 @@
+package ru.docapp.documentapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Period;
+
+@ConfigurationProperties(prefix = "app.archive")
+public record ArchiveProperties(
+        boolean enabled,
+        @DefaultValue("3y") Period horizon,
+        @DefaultValue("1000") int batchSize
+) {}
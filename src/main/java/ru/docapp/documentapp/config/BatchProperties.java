@@ -0,0 +1,9 @@
+package ru.docapp.documentapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "app.batch")
+public record BatchProperties(
+        @DefaultValue("1000") int maxSize
+) {}
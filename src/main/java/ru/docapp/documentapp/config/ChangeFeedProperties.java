@@ -0,0 +1,15 @@
+package ru.docapp.documentapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.change-feed")
+public record ChangeFeedProperties(
+        @DefaultValue("7d") Duration retention,
+        @DefaultValue("1000") int purgeBatchSize,
+        @DefaultValue("100") int maxSubscribers,
+        @DefaultValue("4") int pushThreads,
+        @DefaultValue("30m") Duration streamTimeout
+) {}
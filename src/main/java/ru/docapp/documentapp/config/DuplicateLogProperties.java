@@ -0,0 +1,21 @@
+package ru.docapp.documentapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.duplicate-log")
+public record DuplicateLogProperties(
+        @DefaultValue("10000") int capacity,
+        @DefaultValue("500") int flushSize,
+        @DefaultValue("1s") Duration flushInterval,
+        @DefaultValue("DROP") OverflowPolicy overflowPolicy,
+        @DefaultValue("50ms") Duration offerTimeout
+) {
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+}
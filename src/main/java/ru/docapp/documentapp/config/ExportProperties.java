@@ -0,0 +1,9 @@
+package ru.docapp.documentapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "app.export")
+public record ExportProperties(
+        @DefaultValue("1000") int fetchSize
+) {}
@@ -0,0 +1,14 @@
+package ru.docapp.documentapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.group-commit")
+public record GroupCommitProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("50") int maxBatchSize,
+        @DefaultValue("5ms") Duration maxWait,
+        @DefaultValue("30s") Duration timeout
+) {}
@@ -0,0 +1,86 @@
+package ru.docapp.documentapp.config;
+
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * When migrations run as a separate job and Liquibase is off at startup, compares the changelog with the database
+ * in the background once the application is ready, and reports changesets the job has not applied as health DOWN.
+ */
+@Component
+@Slf4j
+public class MigrationCheck implements HealthIndicator {
+
+    private final DataSource dataSource;
+    private final boolean liquibaseEnabled;
+    private final String changeLog;
+
+    private volatile Health health = Health.unknown().build();
+
+    public MigrationCheck(DataSource dataSource,
+                         @Value("${spring.liquibase.enabled:true}") boolean liquibaseEnabled,
+                         @Value("${spring.liquibase.change-log}") String changeLog) {
+        this.dataSource = dataSource;
+        this.liquibaseEnabled = liquibaseEnabled;
+        this.changeLog = changeLog;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyAsync() {
+        if (liquibaseEnabled) {
+            health = Health.up().withDetail("mode", "applied at startup").build();
+            return;
+        }
+        Thread thread = new Thread(this::verify, "migration-check");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Health health() {
+        return health;
+    }
+
+    private void verify() {
+        try {
+            List<String> pending = findPendingChangeSets();
+            if (pending.isEmpty()) {
+                health = Health.up().withDetail("mode", "external").build();
+            } else {
+                log.error("Database is missing {} changesets of {}: {}", pending.size(), changeLog, pending);
+                health = Health.down().withDetail("mode", "external").withDetail("pending", pending).build();
+            }
+        } catch (Exception e) {
+            log.warn("Could not compare {} with the database", changeLog, e);
+            health = Health.unknown().withException(e).build();
+        }
+    }
+
+    private List<String> findPendingChangeSets() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance()
+                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase(changeLog.replaceFirst("^classpath:", ""),
+                    new ClassLoaderResourceAccessor(), database);
+            return liquibase.listUnrunChangeSets(new Contexts(), new LabelExpression()).stream()
+                    .map(changeSet -> changeSet.toString(false))
+                    .toList();
+        }
+    }
+}
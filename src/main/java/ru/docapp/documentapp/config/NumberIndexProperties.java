@@ -0,0 +1,12 @@
+package ru.docapp.documentapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "app.number-index")
+public record NumberIndexProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1000000") long expectedNumbers,
+        @DefaultValue("0.01") double falsePositiveRate,
+        @DefaultValue("10000") int fetchSize
+) {}
@@ -0,0 +1,15 @@
+package ru.docapp.documentapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.reconciliation")
+public record ReconciliationProperties(
+        boolean enabled,
+        @DefaultValue("10000") int chunkSize,
+        @DefaultValue("2") int parallelism,
+        @DefaultValue("50ms") Duration pause,
+        @DefaultValue("100") int maxReported
+) {}
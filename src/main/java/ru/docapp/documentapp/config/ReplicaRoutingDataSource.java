@@ -0,0 +1,67 @@
+package ru.docapp.documentapp.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Target for read-only connections: the replica, unless the request must read its own writes or the replica
+ * failed within the last retry interval, in which case the primary serves the read.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends DelegatingDataSource {
+
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final long retryIntervalNanos;
+    private volatile long replicaRetryAt;
+
+    public ReplicaRoutingDataSource(DataSource replica, DataSource primary, Duration retryInterval) {
+        super(replica);
+        this.primary = primary;
+        this.retryIntervalNanos = retryInterval.toNanos();
+        this.replicaRetryAt = System.nanoTime();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (ReadYourWritesFilter.primaryRequired() || Boolean.TRUE.equals(PRIMARY_FORCED.get())
+                || System.nanoTime() - replicaRetryAt < 0) {
+            return primary.getConnection();
+        }
+        try {
+            return super.getConnection();
+        } catch (SQLException e) {
+            replicaRetryAt = System.nanoTime() + retryIntervalNanos;
+            log.warn("Replica unavailable, reading from primary for the next {} s: {}",
+                    Duration.ofNanos(retryIntervalNanos).toSeconds(), e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * Runs {@code action} with read-only connections taken from the primary, for reads that outlive the request,
+     * such as cache entries, where a lagging replica would be served long after it caught up.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = PRIMARY_FORCED.get();
+        PRIMARY_FORCED.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_FORCED.remove();
+            }
+        }
+    }
+
+    public boolean isReplicaAvailable() {
+        return System.nanoTime() - replicaRetryAt >= 0;
+    }
+}
@@ -0,0 +1,73 @@
+package ru.docapp.documentapp.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.docapp.documentapp.dto.ArchiveResult;
+import ru.docapp.documentapp.dto.CacheStatsDto;
+import ru.docapp.documentapp.dto.NumberIndexStatsDto;
+import ru.docapp.documentapp.dto.ReconciliationResult;
+import ru.docapp.documentapp.services.AmountReconciliationService;
+import ru.docapp.documentapp.services.DocumentArchiveService;
+import ru.docapp.documentapp.services.DocumentCache;
+import ru.docapp.documentapp.services.DocumentNumberIndex;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Tag(name = "Администрирование", description = "Служебные операции и статистика")
+public class AdminController {
+
+    private final DocumentCache documentCache;
+    private final DocumentNumberIndex documentNumberIndex;
+    private final DocumentArchiveService documentArchiveService;
+    private final AmountReconciliationService amountReconciliationService;
+
+    @Operation(summary = "Статистика кэша документов", description = "Размер кэша, попадания, промахи и вытеснения.")
+    @GetMapping("/cache/documents")
+    public CacheStatsDto documentCacheStats() {
+        return documentCache.stats();
+    }
+
+    @Operation(summary = "Статистика индекса номеров",
+            description = "Фильтр Блума для быстрой проверки дубликатов: размер, число проверок и доля ложных срабатываний.")
+    @GetMapping("/number-index")
+    public NumberIndexStatsDto numberIndexStats() {
+        return documentNumberIndex.stats();
+    }
+
+    @Operation(summary = "Перестроить индекс номеров",
+            description = "Заново читает номера документов из базы. Удалённые номера из фильтра иначе не убираются.")
+    @PostMapping("/number-index/rebuild")
+    public NumberIndexStatsDto rebuildNumberIndex() {
+        return documentNumberIndex.rebuild();
+    }
+
+    @Operation(summary = "Перенести старые документы в архив",
+            description = "Переносит документы с датой раньше cutoff (по умолчанию — начало месяца, отстоящего "
+                    + "на app.archive.horizon от текущей даты) в архивные секции. Номера остаются занятыми, "
+                    + "отчёты не меняются, в журнал изменений пишутся события ARCHIVE.")
+    @PostMapping("/archive")
+    public ArchiveResult archive(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate cutoff) {
+        return documentArchiveService.archive(cutoff != null ? cutoff : documentArchiveService.defaultCutoff());
+    }
+
+    @Operation(summary = "Сверить суммы документов",
+            description = "Сравнивает сумму каждого документа с суммой его спецификаций, проходя таблицу "
+                    + "диапазонами id в app.reconciliation.parallelism потоков с паузой между диапазонами. "
+                    + "При repair=true расхождения исправляются, версия документа увеличивается. "
+                    + "Возвращает число расхождений и первые из них; 409, если сверка уже идёт.")
+    @PostMapping("/reconciliation/amounts")
+    public ReconciliationResult reconcileAmounts(@RequestParam(defaultValue = "false") boolean repair) {
+        return amountReconciliationService.reconcile(repair);
+    }
+}
@@ -1,19 +1,51 @@
 package ru.docapp.documentapp.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import ru.docapp.documentapp.dto.BatchItemResult;
+import ru.docapp.documentapp.dto.CachedDocument;
+import ru.docapp.documentapp.dto.DocumentChangePage;
 import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.DocumentFilter;
+import ru.docapp.documentapp.dto.DocumentFormat;
+import ru.docapp.documentapp.dto.DocumentPage;
 import ru.docapp.documentapp.dto.DocumentResponseDto;
-import ru.docapp.documentapp.dto.SpecificationResponseDto;
-import ru.docapp.documentapp.entities.Document;
+import ru.docapp.documentapp.dto.DocumentSearchHit;
+import ru.docapp.documentapp.dto.DocumentView;
+import ru.docapp.documentapp.dto.IdempotentResult;
+import ru.docapp.documentapp.dto.ImportResult;
+import ru.docapp.documentapp.services.ChangeFeedService;
+import ru.docapp.documentapp.services.DocumentBatchService;
+import ru.docapp.documentapp.services.DocumentExportService;
+import ru.docapp.documentapp.services.DocumentGroupCommit;
+import ru.docapp.documentapp.services.DocumentImportService;
+import ru.docapp.documentapp.services.DocumentJsonWriter;
 import ru.docapp.documentapp.services.DocumentService;
+import ru.docapp.documentapp.services.IdempotencyService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -22,46 +54,258 @@ import java.util.List;
 @Tag(name = "Документы", description = "Операции с документами и спецификациями")
 public class DocumentController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
     private final DocumentService documentService;
+    private final DocumentExportService documentExportService;
+    private final DocumentBatchService documentBatchService;
+    private final DocumentGroupCommit documentGroupCommit;
+    private final DocumentImportService documentImportService;
+    private final IdempotencyService idempotencyService;
+    private final ChangeFeedService changeFeedService;
+    private final ObjectMapper objectMapper;
+
+    @Operation(summary = "Получить страницу документов",
+            description = "Возвращает страницу документов, отсортированную по дате и ID по убыванию. "
+                    + "fields=FULL (по умолчанию) включает спецификации, fields=SUMMARY возвращает только заголовки. "
+                    + "Курсор следующей страницы передаётся в заголовке X-Next-Cursor. "
+                    + "С заголовком Accept: application/cbor ответ возвращается в двоичном формате CBOR.")
+    @ApiResponse(responseCode = "200", description = "Страница документов",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = DocumentResponseDto.class))))
+    @ApiResponse(responseCode = "400", description = "Некорректный курсор")
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, WireFormats.APPLICATION_CBOR_VALUE})
+    public void getAll(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
+            @RequestParam(required = false) String numberPrefix,
+            @RequestParam(required = false) BigDecimal amountMin,
+            @RequestParam(required = false) BigDecimal amountMax,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "FULL") DocumentView fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletResponse response) throws IOException {
+        DocumentPage page = documentService.getDocumentsPage(
+                new DocumentFilter(dateFrom, dateTo, numberPrefix, amountMin, amountMax), cursor, limit, fields);
+
+        writePage(page, accept, response);
+    }
 
-    @Operation(summary = "Получить все документы", description = "Возвращает список всех документов с их спецификациями.")
-    @GetMapping
-    public List<DocumentResponseDto> getAll() {
-        return documentService.getAllDocuments().stream()
-                .map(this::toResponseDto)
-                .toList();
+
+    @Operation(summary = "Получить страницу архивных документов",
+            description = "Документы старше app.archive.horizon переносятся в архив, секционированный по месяцам, "
+                    + "и не попадают в основной листинг. Параметры и порядок те же, что у основного листинга; "
+                    + "фильтр по дате ограничивает чтение нужными месяцами. По ID и номеру архивные документы "
+                    + "доступны через обычные эндпоинты.")
+    @ApiResponse(responseCode = "200", description = "Страница архивных документов",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = DocumentResponseDto.class))))
+    @ApiResponse(responseCode = "400", description = "Некорректный курсор")
+    @GetMapping(value = "/archive", produces = {MediaType.APPLICATION_JSON_VALUE, WireFormats.APPLICATION_CBOR_VALUE})
+    public void getArchived(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
+            @RequestParam(required = false) String numberPrefix,
+            @RequestParam(required = false) BigDecimal amountMin,
+            @RequestParam(required = false) BigDecimal amountMax,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "FULL") DocumentView fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletResponse response) throws IOException {
+        DocumentPage page = documentService.getArchivedDocumentsPage(
+                new DocumentFilter(dateFrom, dateTo, numberPrefix, amountMin, amountMax), cursor, limit, fields);
+        writePage(page, accept, response);
     }
 
 
 
-    @Operation(summary = "Получить документ по ID", description = "Возвращает документ с полной информацией о спецификациях.")
-    @ApiResponse(responseCode = "200", description = "Документ найден")
+    @Operation(summary = "Полнотекстовый поиск документов",
+            description = "Ищет по номеру (в том числе по фрагменту), примечанию и наименованиям спецификаций. "
+                    + "Результаты отсортированы по релевантности; спецификации не загружаются, "
+                    + "возвращаются только совпавшие наименования.")
+    @ApiResponse(responseCode = "200", description = "Найденные документы")
+    @GetMapping("/search")
+    public List<DocumentSearchHit> search(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return documentService.searchDocuments(q, page, size);
+    }
+
+    @Operation(summary = "Выгрузить реестр документов",
+            description = "Потоково выгружает документы со спецификациями в формате NDJSON (документ на строку) "
+                    + "или CSV (спецификация на строку), не загружая реестр в память.")
+    @ApiResponse(responseCode = "200", description = "Выгрузка начата")
+    @ApiResponse(responseCode = "400", description = "Неизвестный формат")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(defaultValue = "NDJSON") DocumentFormat format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo) {
+        StreamingResponseBody body = out -> documentExportService.export(dateFrom, dateTo, format, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("documents." + format.getExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+
+    @Operation(summary = "Получить изменения документов",
+            description = "Возвращает события создания, изменения и удаления документов после курсора since "
+                    + "(без since — с начала журнала) в порядке фиксации транзакций. Для созданных и изменённых "
+                    + "документов передаётся их текущее состояние, для удалённых — только ID. "
+                    + "Курсор для следующего запроса передаётся в nextCursor и в заголовке X-Next-Cursor. "
+                    + "События хранятся app.change-feed.retention; более старый курсор отклоняется с кодом 410.")
+    @ApiResponse(responseCode = "200", description = "Страница изменений")
+    @ApiResponse(responseCode = "400", description = "Некорректный курсор")
+    @ApiResponse(responseCode = "410", description = "Курсор устарел, требуется полная синхронизация")
+    @GetMapping("/changes")
+    public ResponseEntity<DocumentChangePage> getChanges(
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "FULL") DocumentView fields) {
+        DocumentChangePage page = changeFeedService.getChanges(since, limit, fields);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, page.nextCursor())
+                .body(page);
+    }
+
+
+    @Operation(summary = "Подписаться на изменения документов",
+            description = "Server-Sent Events: каждое изменение приходит событием change с курсором в поле id. "
+                    + "Без since поток начинается с новых изменений; при переподключении позиция берётся "
+                    + "из заголовка Last-Event-ID.")
+    @ApiResponse(responseCode = "200", description = "Поток открыт")
+    @ApiResponse(responseCode = "410", description = "Курсор устарел, требуется полная синхронизация")
+    @ApiResponse(responseCode = "503", description = "Достигнут лимит подписчиков")
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestParam(required = false) String since,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId,
+            @RequestParam(defaultValue = "FULL") DocumentView fields) {
+        return changeFeedService.subscribe(lastEventId != null ? lastEventId : since, fields);
+    }
+
+
+    @Operation(summary = "Получить документ по ID",
+            description = "Возвращает документ с полной информацией о спецификациях в JSON или, "
+                    + "с заголовком Accept: application/cbor, в CBOR.")
+    @ApiResponse(responseCode = "200", description = "Документ найден",
+            content = @Content(schema = @Schema(implementation = DocumentResponseDto.class)))
+    @ApiResponse(responseCode = "304", description = "Документ не изменился (If-None-Match)")
     @ApiResponse(responseCode = "404", description = "Документ не найден")
-    @GetMapping("/{id}")
-    public ResponseEntity<Document> getById(@PathVariable Long id) {
-        return ResponseEntity.ok(documentService.getDocumentWithSpecifications(id));
+    @GetMapping(value = "/{id}", produces = {MediaType.APPLICATION_JSON_VALUE, WireFormats.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<byte[]> getById(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(ETags.of(documentService.getDocumentVersion(id)))) {
+            return null;
+        }
+        return document(documentService.getDocumentResponse(id), request.getHeader(HttpHeaders.ACCEPT));
     }
 
 
-    @Operation(summary = "Создать новый документ", description = "Создаёт документ и его спецификации. Сумма документа рассчитывается автоматически.")
-    @ApiResponse(responseCode = "201", description = "Документ создан")
-    @ApiResponse(responseCode = "400", description = "Некорректные данные")
+    @Operation(summary = "Получить документ по номеру",
+            description = "Возвращает документ с полной информацией о спецификациях в JSON или, "
+                    + "с заголовком Accept: application/cbor, в CBOR.")
+    @ApiResponse(responseCode = "200", description = "Документ найден",
+            content = @Content(schema = @Schema(implementation = DocumentResponseDto.class)))
+    @ApiResponse(responseCode = "404", description = "Документ не найден")
+    @GetMapping(value = "/number/{number}", produces = {MediaType.APPLICATION_JSON_VALUE, WireFormats.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<byte[]> getByNumber(@PathVariable String number,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return document(documentService.getDocumentResponseByNumber(number), accept);
+    }
+
+
+    @Operation(summary = "Создать новый документ",
+            description = "Создаёт документ и его спецификации. Сумма документа рассчитывается автоматически. "
+                    + "С заголовком Idempotency-Key повторный запрос с тем же телом в течение app.idempotency.ttl "
+                    + "возвращает исходный ответ 201 без повторной вставки (заголовок Idempotent-Replayed: true). "
+                    + "При app.group-commit.enabled одновременные запросы без ключа вставляются общей транзакцией.")
+    @ApiResponse(responseCode = "201", description = "Документ создан",
+            content = @Content(schema = @Schema(implementation = DocumentResponseDto.class)))
+    @ApiResponse(responseCode = "400", description = "Некорректные данные или ключ идемпотентности")
     @ApiResponse(responseCode = "409", description = "Документ с таким номером уже существует")
-    @PostMapping
-    public ResponseEntity<Document> create(@Valid @RequestBody DocumentDto dto) {
-        Document doc = documentService.createDocument(dto);
-        return ResponseEntity.status(HttpStatus.CREATED).body(doc);
+    @ApiResponse(responseCode = "422", description = "Ключ идемпотентности уже использован с другим телом запроса")
+    @ApiResponse(responseCode = "503", description = "Сервис перегружен, повторите после Retry-After. Если общая "
+            + "транзакция не зафиксирована за app.group-commit.timeout, результат неизвестен: документ может быть "
+            + "создан позже, поэтому перед повтором проверьте его по номеру (повтор без Idempotency-Key может "
+            + "получить 409)")
+    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> create(
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody DocumentDto dto) {
+        CachedDocument doc;
+        boolean replayed = false;
+        if (idempotencyKey == null) {
+            doc = documentGroupCommit.isEnabled()
+                    ? documentGroupCommit.createDocument(dto)
+                    : documentService.createDocument(dto);
+        } else {
+            IdempotentResult result = idempotencyService.createDocument(idempotencyKey, dto);
+            doc = result.document();
+            replayed = result.replayed();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.CREATED)
+                .eTag(ETags.of(doc.version()))
+                .contentType(MediaType.APPLICATION_JSON);
+        if (replayed) {
+            response.header(IDEMPOTENT_REPLAYED_HEADER, "true");
+        }
+        return response.body(doc.json());
+    }
+
+
+    @Operation(summary = "Создать документы пакетом",
+            description = "Создаёт до app.batch.max-size документов одной транзакцией с пакетной вставкой. "
+                    + "Для каждого элемента возвращается результат: созданный ID, дубликат или ошибка валидации.")
+    @ApiResponse(responseCode = "200", description = "Пакет обработан")
+    @ApiResponse(responseCode = "400", description = "Превышен размер пакета")
+    @PostMapping("/batch")
+    public List<BatchItemResult> createBatch(@RequestBody List<DocumentDto> dtos) {
+        return documentBatchService.createDocuments(dtos);
+    }
+
+
+    @Operation(summary = "Массовый импорт документов",
+            description = "Потоково загружает CSV (number,date,note,specification_name,specification_amount с заголовком) "
+                    + "или NDJSON (документ на строку) через COPY во временную таблицу и переносит данные "
+                    + "в реестр одним набором запросов. Дубликаты номеров пропускаются и пишутся в журнал. "
+                    + "Некорректные строки отбрасываются; документы, у которых не осталось ни одной корректной "
+                    + "строки, считаются в documentsRejected.")
+    @ApiResponse(responseCode = "200", description = "Импорт выполнен")
+    @ApiResponse(responseCode = "400", description = "Некорректные данные файла")
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ImportResult importDocuments(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                        InputStream body) throws IOException {
+        DocumentFormat format = MediaType.parseMediaType(DocumentFormat.CSV.getContentType()).includes(contentType)
+                ? DocumentFormat.CSV
+                : DocumentFormat.NDJSON;
+        return documentImportService.importDocuments(format, body);
     }
 
 
     @Operation(summary = "Обновить документ")
-    @ApiResponse(responseCode = "200", description = "Документ обновлён")
+    @ApiResponse(responseCode = "200", description = "Документ обновлён",
+            content = @Content(schema = @Schema(implementation = DocumentResponseDto.class)))
     @ApiResponse(responseCode = "404", description = "Документ не найден")
-    @ApiResponse(responseCode = "409", description = "Номер документа уже занят")
-    @PutMapping("/{id}")
-    public ResponseEntity<Document> update(@PathVariable Long id, @Valid @RequestBody DocumentDto dto) {
-        Document doc = documentService.updateDocument(id, dto);
-        return ResponseEntity.ok(doc);
+    @ApiResponse(responseCode = "409", description = "Номер документа уже занят или документ изменён параллельно")
+    @ApiResponse(responseCode = "412", description = "Версия в If-Match устарела")
+    @PutMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> update(@PathVariable Long id,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                         @Valid @RequestBody DocumentDto dto) {
+        CachedDocument doc = documentService.updateDocument(id, dto, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(ETags.of(doc.version()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(doc.json());
     }
 
 
@@ -74,25 +318,29 @@ public class DocumentController {
         return ResponseEntity.noContent().build();
     }
 
-    private DocumentResponseDto toResponseDto(Document doc) {
-        var specDtos = doc.getSpecifications().stream()
-                .map(spec -> new SpecificationResponseDto(
-                        spec.getId(),
-                        spec.getName(),
-                        spec.getAmount()
-                ))
-                .toList();
-
-        return new DocumentResponseDto(
-                doc.getId(),
-                doc.getNumber(),
-                doc.getDate(),
-                doc.getAmount(),
-                doc.getNote(),
-                specDtos
-        );
+    private void writePage(DocumentPage page, String accept, HttpServletResponse response) throws IOException {
+        MediaType type = WireFormats.negotiate(accept);
+        if (page.nextCursor() != null) {
+            response.setHeader(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        response.setContentType(type.toString());
+        // written straight to the response: no converter lookup, no bean introspection, no intermediate buffer
+        try (JsonGenerator generator = WireFormats.factory(type, objectMapper.getFactory())
+                .createGenerator(response.getOutputStream())) {
+            DocumentJsonWriter.writeDocuments(generator, page.items());
+        }
     }
 
-
+    private ResponseEntity<byte[]> document(CachedDocument doc, String accept) {
+        MediaType type = WireFormats.negotiate(accept);
+        byte[] body = MediaType.APPLICATION_JSON.equals(type)
+                ? doc.json()
+                : DocumentJsonWriter.toBytes(WireFormats.factory(type, objectMapper.getFactory()), doc.document());
+        return ResponseEntity.ok()
+                .eTag(ETags.of(doc.version()))
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(type)
+                .body(body);
+    }
 }
-
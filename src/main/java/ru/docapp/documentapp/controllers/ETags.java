@@ -0,0 +1,31 @@
+package ru.docapp.documentapp.controllers;
+
+import ru.docapp.documentapp.exceptions.DocumentVersionMismatchException;
+
+final class ETags {
+
+    private ETags() {
+    }
+
+    // weak: the version tags the document state shared by the JSON, CBOR and gzip representations, and Tomcat
+    // refuses to compress responses with a strong validator
+    static String of(Long version) {
+        return "W/\"" + version + "\"";
+    }
+
+    static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        tag = tag.replace("\"", "");
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new DocumentVersionMismatchException("Unrecognized If-Match value: " + ifMatch);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.docapp.documentapp.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.docapp.documentapp.dto.ReportGranularity;
+import ru.docapp.documentapp.dto.ReportRebuildResult;
+import ru.docapp.documentapp.dto.ReportTotalDto;
+import ru.docapp.documentapp.dto.SpecificationNameTotalDto;
+import ru.docapp.documentapp.services.ReportService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/reports")
+@RequiredArgsConstructor
+@Tag(name = "Отчёты", description = "Итоги по документам и спецификациям из сводных таблиц")
+public class ReportController {
+
+    private final ReportService reportService;
+
+    @Operation(summary = "Итоги по периодам",
+            description = "Количество документов и сумма по дням или месяцам за диапазон дат.")
+    @ApiResponse(responseCode = "200", description = "Итоги по периодам")
+    @ApiResponse(responseCode = "400", description = "Неизвестная гранулярность")
+    @GetMapping("/totals")
+    public List<ReportTotalDto> totals(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
+            @RequestParam(defaultValue = "DAY") ReportGranularity granularity) {
+        return reportService.getTotals(dateFrom, dateTo, granularity);
+    }
+
+    @Operation(summary = "Популярные наименования спецификаций",
+            description = "Наименования спецификаций с наибольшим количеством позиций за диапазон дат.")
+    @ApiResponse(responseCode = "200", description = "Список наименований")
+    @GetMapping("/top-specifications")
+    public List<SpecificationNameTotalDto> topSpecifications(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
+            @RequestParam(defaultValue = "10") int limit) {
+        return reportService.getTopSpecifications(dateFrom, dateTo, limit);
+    }
+
+    @Operation(summary = "Пересчитать сводные таблицы",
+            description = "Пересобирает итоги за диапазон дат (или целиком) по данным документов. "
+                    + "Используется для заполнения после массовой загрузки и сверки. Разница с текущими итогами "
+                    + "записывается приращением, поэтому одновременная запись не блокируется; "
+                    + "параллельные пересчёты ждут друг друга.")
+    @ApiResponse(responseCode = "200", description = "Сводные таблицы пересчитаны")
+    @PostMapping("/rebuild")
+    public ReportRebuildResult rebuild(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo) {
+        return reportService.rebuild(dateFrom, dateTo);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.docapp.documentapp.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.docapp.documentapp.dto.SpecificationChangeResult;
+import ru.docapp.documentapp.dto.SpecificationDto;
+import ru.docapp.documentapp.dto.SpecificationPatchDto;
+import ru.docapp.documentapp.services.SpecificationService;
+
+@RestController
+@RequestMapping("/api/documents/{documentId}/specifications")
+@RequiredArgsConstructor
+@Tag(name = "Спецификации", description = "Точечные изменения спецификаций документа")
+public class SpecificationController {
+
+    private final SpecificationService specificationService;
+
+    @Operation(summary = "Добавить спецификацию", description = "Добавляет строку и увеличивает сумму документа на её сумму.")
+    @ApiResponse(responseCode = "201", description = "Спецификация добавлена")
+    @ApiResponse(responseCode = "404", description = "Документ не найден")
+    @ApiResponse(responseCode = "409", description = "Спецификация с таким наименованием уже есть в документе")
+    @ApiResponse(responseCode = "412", description = "Версия в If-Match устарела")
+    @PostMapping
+    public ResponseEntity<SpecificationChangeResult> add(@PathVariable Long documentId,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                         @Valid @RequestBody SpecificationDto dto) {
+        SpecificationChangeResult result = specificationService.addSpecification(
+                documentId, dto, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(ETags.of(result.documentVersion())).body(result);
+    }
+
+
+    @Operation(summary = "Изменить спецификацию", description = "Меняет наименование и/или сумму строки, сумма документа меняется на разницу.")
+    @ApiResponse(responseCode = "200", description = "Спецификация изменена")
+    @ApiResponse(responseCode = "404", description = "Документ или спецификация не найдены")
+    @ApiResponse(responseCode = "409", description = "Спецификация с таким наименованием уже есть в документе")
+    @ApiResponse(responseCode = "412", description = "Версия в If-Match устарела")
+    @PatchMapping("/{specId}")
+    public ResponseEntity<SpecificationChangeResult> update(@PathVariable Long documentId,
+                                                            @PathVariable Long specId,
+                                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                            @Valid @RequestBody SpecificationPatchDto dto) {
+        SpecificationChangeResult result = specificationService.updateSpecification(
+                documentId, specId, dto, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(result.documentVersion())).body(result);
+    }
+
+
+    @Operation(summary = "Удалить спецификацию", description = "Удаляет строку и уменьшает сумму документа на её сумму.")
+    @ApiResponse(responseCode = "200", description = "Спецификация удалена")
+    @ApiResponse(responseCode = "404", description = "Документ или спецификация не найдены")
+    @ApiResponse(responseCode = "412", description = "Версия в If-Match устарела")
+    @DeleteMapping("/{specId}")
+    public ResponseEntity<SpecificationChangeResult> delete(@PathVariable Long documentId,
+                                                            @PathVariable Long specId,
+                                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        SpecificationChangeResult result = specificationService.deleteSpecification(
+                documentId, specId, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(result.documentVersion())).body(result);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.docapp.documentapp.controllers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Picks JSON or CBOR for endpoints that write documents themselves instead of going through message converters.
+ */
+final class WireFormats {
+
+    static final String APPLICATION_CBOR_VALUE = "application/cbor";
+    static final MediaType APPLICATION_CBOR = MediaType.parseMediaType(APPLICATION_CBOR_VALUE);
+
+    private static final CBORFactory CBOR_FACTORY = new CBORFactory();
+
+    private WireFormats() {
+    }
+
+    /**
+     * Returns CBOR only when the client ranks it above JSON; wildcards and missing or broken Accept headers get JSON.
+     */
+    static MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        return accepted.stream()
+                .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed())
+                .filter(type -> type.includes(MediaType.APPLICATION_JSON) || type.includes(APPLICATION_CBOR))
+                .findFirst()
+                .filter(type -> !type.includes(MediaType.APPLICATION_JSON))
+                .map(type -> APPLICATION_CBOR)
+                .orElse(MediaType.APPLICATION_JSON);
+    }
+
+    static JsonFactory factory(MediaType type, JsonFactory json) {
+        return APPLICATION_CBOR.equals(type) ? CBOR_FACTORY : json;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.docapp.documentapp.dto;
+
+import java.math.BigDecimal;
+
+public record AmountMismatch(
+        Long id,
+        String number,
+        BigDecimal amount,
+        BigDecimal expectedAmount
+) {}
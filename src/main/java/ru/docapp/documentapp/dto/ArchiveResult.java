@@ -0,0 +1,10 @@
+package ru.docapp.documentapp.dto;
+
+import java.time.LocalDate;
+
+public record ArchiveResult(
+        LocalDate cutoff,
+        long documents,
+        long specifications,
+        int batches
+) {}
@@ -0,0 +1,22 @@
+package ru.docapp.documentapp.dto;
+
+public record BatchItemResult(
+        int index,
+        String number,
+        BatchItemStatus status,
+        Long id,
+        String message
+) {
+
+    public static BatchItemResult created(int index, String number, Long id) {
+        return new BatchItemResult(index, number, BatchItemStatus.CREATED, id, null);
+    }
+
+    public static BatchItemResult duplicate(int index, String number) {
+        return new BatchItemResult(index, number, BatchItemStatus.DUPLICATE, null, "Document number already exists");
+    }
+
+    public static BatchItemResult invalid(int index, String number, String message) {
+        return new BatchItemResult(index, number, BatchItemStatus.INVALID, null, message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.dto;
+
+public enum BatchItemStatus {
+    CREATED,
+    DUPLICATE,
+    INVALID
+}
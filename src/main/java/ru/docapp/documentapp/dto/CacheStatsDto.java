@@ -0,0 +1,11 @@
+package ru.docapp.documentapp.dto;
+
+public record CacheStatsDto(
+        long entries,
+        long sizeBytes,
+        long hits,
+        long misses,
+        double hitRate,
+        long evictions,
+        long evictedBytes
+) {}
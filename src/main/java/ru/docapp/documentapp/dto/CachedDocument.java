@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.dto;
+
+public record CachedDocument(
+        DocumentResponseDto document,
+        long version,
+        byte[] json
+) {}
@@ -0,0 +1,44 @@
+package ru.docapp.documentapp.dto;
+
+import ru.docapp.documentapp.exceptions.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in the change feed: the writing transaction id and the event id within it. Events are read in
+ * (xid, id) order and only once every older transaction has finished, so the cursor never skips a late commit.
+ */
+public record ChangeCursor(
+        long xid,
+        long id
+) {
+
+    public static final ChangeCursor START = new ChangeCursor(0, 0);
+
+    public boolean isBefore(ChangeCursor other) {
+        return xid < other.xid || xid == other.xid && id < other.id;
+    }
+
+    public String encode() {
+        String raw = xid + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ChangeCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            if (sep < 0) {
+                throw new InvalidCursorException("Invalid cursor: " + cursor);
+            }
+            return new ChangeCursor(
+                    Long.parseLong(raw.substring(0, sep)),
+                    Long.parseLong(raw.substring(sep + 1))
+            );
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package ru.docapp.documentapp.dto;
+
+public enum ChangeOperation {
+    CREATE,
+    UPDATE,
+    DELETE,
+    ARCHIVE
+}
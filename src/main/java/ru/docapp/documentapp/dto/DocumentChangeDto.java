@@ -0,0 +1,16 @@
+package ru.docapp.documentapp.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One change feed event. {@code document} is the current state of the document, not the state at the time of
+ * the event, and is null once the document is deleted.
+ */
+public record DocumentChangeDto(
+        String cursor,
+        Long documentId,
+        ChangeOperation operation,
+        long version,
+        LocalDateTime changedAt,
+        DocumentResponseDto document
+) {}
@@ -0,0 +1,9 @@
+package ru.docapp.documentapp.dto;
+
+import java.util.List;
+
+public record DocumentChangePage(
+        List<DocumentChangeDto> changes,
+        String nextCursor,
+        boolean hasMore
+) {}
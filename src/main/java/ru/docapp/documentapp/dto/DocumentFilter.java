@@ -0,0 +1,12 @@
+package ru.docapp.documentapp.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record DocumentFilter(
+        LocalDate dateFrom,
+        LocalDate dateTo,
+        String numberPrefix,
+        BigDecimal amountMin,
+        BigDecimal amountMax
+) {}
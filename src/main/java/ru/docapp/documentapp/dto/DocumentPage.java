@@ -0,0 +1,8 @@
+package ru.docapp.documentapp.dto;
+
+import java.util.List;
+
+public record DocumentPage(
+        List<DocumentResponseDto> items,
+        String nextCursor
+) {}
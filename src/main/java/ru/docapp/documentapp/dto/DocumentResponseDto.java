@@ -1,5 +1,7 @@
 package ru.docapp.documentapp.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -10,5 +12,6 @@ public record DocumentResponseDto(
         LocalDate date,
         BigDecimal amount,
         String note,
+        @JsonInclude(JsonInclude.Include.NON_NULL)
         List<SpecificationResponseDto> specifications
 ) {}
\ No newline at end of file
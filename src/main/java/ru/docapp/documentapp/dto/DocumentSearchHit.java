@@ -0,0 +1,15 @@
+package ru.docapp.documentapp.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public record DocumentSearchHit(
+        Long id,
+        String number,
+        LocalDate date,
+        BigDecimal amount,
+        String note,
+        double rank,
+        List<String> matchedSpecifications
+) {}
@@ -0,0 +1,6 @@
+package ru.docapp.documentapp.dto;
+
+public record DocumentSnapshot(
+        DocumentResponseDto document,
+        long version
+) {}
@@ -0,0 +1,6 @@
+package ru.docapp.documentapp.dto;
+
+public enum DocumentView {
+    SUMMARY,
+    FULL
+}
@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.dto;
+
+public record IdempotencyRecord(
+        String requestHash,
+        long version,
+        byte[] response
+) {}
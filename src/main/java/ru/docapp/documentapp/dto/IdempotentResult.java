@@ -0,0 +1,6 @@
+package ru.docapp.documentapp.dto;
+
+public record IdempotentResult(
+        CachedDocument document,
+        boolean replayed
+) {}
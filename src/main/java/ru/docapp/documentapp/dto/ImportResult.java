@@ -0,0 +1,10 @@
+package ru.docapp.documentapp.dto;
+
+public record ImportResult(
+        long rowsRead,
+        long rowsRejected,
+        long documentsRejected,
+        long documentsCreated,
+        long specificationsCreated,
+        long duplicates
+) {}
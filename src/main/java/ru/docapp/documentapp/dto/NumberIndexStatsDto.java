@@ -0,0 +1,14 @@
+package ru.docapp.documentapp.dto;
+
+public record NumberIndexStatsDto(
+        boolean ready,
+        long capacity,
+        long entries,
+        long staleEntries,
+        long bits,
+        int hashes,
+        long absent,
+        long duplicates,
+        long falsePositives,
+        double falsePositiveRate
+) {}
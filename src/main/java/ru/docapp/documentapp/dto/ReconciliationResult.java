@@ -0,0 +1,11 @@
+package ru.docapp.documentapp.dto;
+
+import java.util.List;
+
+public record ReconciliationResult(
+        boolean repair,
+        int chunks,
+        long mismatched,
+        long elapsedMs,
+        List<AmountMismatch> mismatches
+) {}
@@ -0,0 +1,6 @@
+package ru.docapp.documentapp.dto;
+
+public record ReportRebuildResult(
+        long dailyBuckets,
+        long specificationBuckets
+) {}
@@ -0,0 +1,10 @@
+package ru.docapp.documentapp.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record ReportTotalDto(
+        LocalDate period,
+        long documentCount,
+        BigDecimal totalAmount
+) {}
@@ -0,0 +1,9 @@
+package ru.docapp.documentapp.dto;
+
+import java.math.BigDecimal;
+
+public record SpecificationChangeResult(
+        SpecificationResponseDto specification,
+        BigDecimal documentAmount,
+        long documentVersion
+) {}
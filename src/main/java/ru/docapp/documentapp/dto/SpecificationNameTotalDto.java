@@ -0,0 +1,9 @@
+package ru.docapp.documentapp.dto;
+
+import java.math.BigDecimal;
+
+public record SpecificationNameTotalDto(
+        String name,
+        long specificationCount,
+        BigDecimal totalAmount
+) {}
@@ -0,0 +1,13 @@
+package ru.docapp.documentapp.dto;
+
+import jakarta.validation.constraints.*;
+
+import java.math.BigDecimal;
+
+public record SpecificationPatchDto(
+        @Size(min = 1, max = 255)
+        String name,
+
+        @DecimalMin(value = "0.01", message = "Amount must be positive")
+        BigDecimal amount
+) {}
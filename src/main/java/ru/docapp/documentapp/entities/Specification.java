@@ -16,7 +16,8 @@ import java.math.BigDecimal;
 public class Specification {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "specification_seq")
+    @SequenceGenerator(name = "specification_seq", sequenceName = "specification_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
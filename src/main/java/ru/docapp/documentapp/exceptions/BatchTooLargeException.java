@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.exceptions;
+
+public class BatchTooLargeException extends RuntimeException {
+    public BatchTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.exceptions;
+
+public class ChangeCursorExpiredException extends RuntimeException {
+    public ChangeCursorExpiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.exceptions;
+
+public class ChangeFeedUnavailableException extends RuntimeException {
+    public ChangeFeedUnavailableException(String message) {
+        super(message);
+    }
+}
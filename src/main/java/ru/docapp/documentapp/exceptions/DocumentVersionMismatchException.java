@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.exceptions;
+
+public class DocumentVersionMismatchException extends RuntimeException {
+    public DocumentVersionMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.exceptions;
+
+public class DuplicateSpecificationNameException extends RuntimeException {
+    public DuplicateSpecificationNameException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.exceptions;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.exceptions;
+
+public class ImportFailedException extends RuntimeException {
+    public ImportFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.exceptions;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
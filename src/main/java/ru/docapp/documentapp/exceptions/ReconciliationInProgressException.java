@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.exceptions;
+
+public class ReconciliationInProgressException extends RuntimeException {
+    public ReconciliationInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.docapp.documentapp.exceptions;
+
+public class SpecificationNotFoundException extends RuntimeException {
+    public SpecificationNotFoundException(String message) {
+        super(message);
+    }
+}
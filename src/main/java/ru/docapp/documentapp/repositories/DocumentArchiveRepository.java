@@ -0,0 +1,86 @@
+package ru.docapp.documentapp.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class DocumentArchiveRepository {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'p'yyyy_MM");
+    private static final long ARCHIVE_LOCK = 0x41524348_49564531L;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Serializes archival runs across instances for the current transaction; returns false if another one holds it.
+     */
+    public boolean tryLock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(:key)", Map.of("key", ARCHIVE_LOCK), Boolean.class));
+    }
+
+    public Optional<LocalDate> findOldestDateBefore(LocalDate cutoff) {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(
+                "SELECT MIN(date) FROM document WHERE date < :cutoff", Map.of("cutoff", cutoff), LocalDate.class));
+    }
+
+    public void createPartitions(YearMonth month) {
+        String suffix = month.format(PARTITION_SUFFIX);
+        String from = month.atDay(1).toString();
+        String to = month.plusMonths(1).atDay(1).toString();
+        jdbcTemplate.getJdbcTemplate().execute(
+                "CREATE TABLE IF NOT EXISTS document_archive_%s PARTITION OF document_archive FOR VALUES FROM ('%s') TO ('%s')"
+                        .formatted(suffix, from, to));
+        jdbcTemplate.getJdbcTemplate().execute(
+                "CREATE TABLE IF NOT EXISTS specification_archive_%s PARTITION OF specification_archive FOR VALUES FROM ('%s') TO ('%s')"
+                        .formatted(suffix, from, to));
+    }
+
+    public List<Long> lockBatch(LocalDate cutoff, int limit) {
+        return jdbcTemplate.queryForList("""
+                SELECT id FROM document
+                WHERE date < :cutoff
+                ORDER BY date, id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED""",
+                new MapSqlParameterSource()
+                        .addValue("cutoff", cutoff)
+                        .addValue("limit", limit),
+                Long.class);
+    }
+
+    /**
+     * Copies the documents with their specifications into the archive and deletes them from the live tables.
+     * Returns the number of archived specifications. Report summaries keep counting archived documents, and
+     * the change feed records the removal as ARCHIVE.
+     */
+    public long moveToArchive(List<Long> ids) {
+        Map<String, List<Long>> params = Map.of("ids", ids);
+        jdbcTemplate.queryForObject("SELECT set_config('app.archiving', 'on', true)", Map.of(), String.class);
+        jdbcTemplate.update("""
+                INSERT INTO document_archive (id, number, date, amount, note, version)
+                SELECT id, number, date, amount, note, version FROM document WHERE id IN (:ids)""", params);
+        int specifications = jdbcTemplate.update("""
+                INSERT INTO specification_archive (id, document_id, document_date, name, amount)
+                SELECT s.id, s.document_id, d.date, s.name, s.amount
+                FROM specification s
+                JOIN document d ON d.id = s.document_id
+                WHERE d.id IN (:ids)""", params);
+        jdbcTemplate.update("""
+                INSERT INTO archived_document (id, number, date)
+                SELECT id, number, date FROM document WHERE id IN (:ids)""", params);
+        jdbcTemplate.update("DELETE FROM document WHERE id IN (:ids)", params);
+        jdbcTemplate.queryForObject("SELECT set_config('app.archiving', 'off', true)", Map.of(), String.class);
+        return specifications;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.docapp.documentapp.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Repository
+@RequiredArgsConstructor
+public class DocumentBatchRepository {
+
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    private static final int[] DOCUMENT_TYPES = {Types.BIGINT, Types.VARCHAR, Types.DATE, Types.NUMERIC, Types.VARCHAR};
+    private static final int[] SPECIFICATION_TYPES = {Types.BIGINT, Types.BIGINT, Types.VARCHAR, Types.NUMERIC};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public List<Long> allocateDocumentIds(int count) {
+        return allocateIds("document_seq", count);
+    }
+
+    public List<Long> allocateSpecificationIds(int count) {
+        return allocateIds("specification_seq", count);
+    }
+
+    public Set<String> findExistingNumbers(Collection<String> numbers) {
+        if (numbers.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(namedJdbcTemplate.queryForList(
+                """
+                        SELECT number FROM document WHERE number IN (:numbers)
+                        UNION ALL
+                        SELECT number FROM archived_document WHERE number IN (:numbers)""",
+                Map.of("numbers", numbers),
+                String.class
+        ));
+    }
+
+    public Set<Long> findExistingIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(namedJdbcTemplate.queryForList(
+                "SELECT id FROM document WHERE id IN (:ids)",
+                Map.of("ids", ids),
+                Long.class
+        ));
+    }
+
+    public void insertDocuments(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO document (id, number, date, amount, note) VALUES (?, ?, ?, ?, ?) ON CONFLICT (number) DO NOTHING",
+                rows,
+                DOCUMENT_TYPES
+        );
+    }
+
+    public void insertSpecifications(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO specification (id, document_id, name, amount) VALUES (?, ?, ?, ?)",
+                rows,
+                SPECIFICATION_TYPES
+        );
+    }
+
+    private List<Long> allocateIds(String sequence, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        if (count == 0) {
+            return ids;
+        }
+        int blocks = (count + ID_ALLOCATION_SIZE - 1) / ID_ALLOCATION_SIZE;
+        List<Long> starts = jdbcTemplate.queryForList(
+                "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)", Long.class, blocks);
+        for (Long start : starts) {
+            for (int i = 0; i < ID_ALLOCATION_SIZE && ids.size() < count; i++) {
+                ids.add(start + i);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,111 @@
+package ru.docapp.documentapp.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.docapp.documentapp.dto.ChangeCursor;
+import ru.docapp.documentapp.dto.ChangeOperation;
+import ru.docapp.documentapp.dto.DocumentChangeDto;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class DocumentChangeRepository {
+
+    // events of transactions that are still running, or that committed after an older one that is still running,
+    // stay hidden until the snapshot xmin passes them, so a cursor handed out once is never overtaken
+    private static final String VISIBLE = "c.xid < pg_snapshot_xmin(pg_current_snapshot())::text::bigint";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Returns events after {@code after} with the current document header; specifications are not loaded.
+     */
+    public List<DocumentChangeDto> findAfter(ChangeCursor after, int limit) {
+        return jdbcTemplate.query("""
+                SELECT c.id, c.xid, c.document_id, c.operation, c.version, c.changed_at,
+                       d.number, d.date, d.amount, d.note
+                FROM document_change c
+                LEFT JOIN document d ON d.id = c.document_id
+                WHERE %s AND (c.xid, c.id) > (:xid, :id)
+                ORDER BY c.xid, c.id
+                LIMIT :limit""".formatted(VISIBLE),
+                new MapSqlParameterSource()
+                        .addValue("xid", after.xid())
+                        .addValue("id", after.id())
+                        .addValue("limit", limit),
+                (rs, rowNum) -> {
+                    long documentId = rs.getLong("document_id");
+                    String number = rs.getString("number");
+                    return new DocumentChangeDto(
+                            new ChangeCursor(rs.getLong("xid"), rs.getLong("id")).encode(),
+                            documentId,
+                            ChangeOperation.valueOf(rs.getString("operation")),
+                            rs.getLong("version"),
+                            rs.getObject("changed_at", LocalDateTime.class),
+                            number == null ? null : new DocumentResponseDto(
+                                    documentId,
+                                    number,
+                                    rs.getObject("date", LocalDate.class),
+                                    rs.getBigDecimal("amount"),
+                                    rs.getString("note"),
+                                    null
+                            )
+                    );
+                });
+    }
+
+    public Optional<ChangeCursor> findHead() {
+        return jdbcTemplate.query("""
+                SELECT c.xid, c.id
+                FROM document_change c
+                WHERE %s
+                ORDER BY c.xid DESC, c.id DESC
+                LIMIT 1""".formatted(VISIBLE),
+                Map.of(),
+                (rs, rowNum) -> new ChangeCursor(rs.getLong("xid"), rs.getLong("id"))
+        ).stream().findFirst();
+    }
+
+    /**
+     * Returns the newest purged event. A cursor before it may have missed purged events; one at or after it has not.
+     */
+    public ChangeCursor findPurgeWatermark() {
+        return jdbcTemplate.queryForObject("SELECT xid, id FROM document_change_watermark", Map.of(),
+                (rs, rowNum) -> new ChangeCursor(rs.getLong("xid"), rs.getLong("id")));
+    }
+
+    /**
+     * Deletes up to {@code limit} expired events and moves the purge watermark past the newest of them.
+     */
+    public int deleteOlderThan(Duration retention, int limit) {
+        return jdbcTemplate.queryForObject("""
+                WITH purged AS (
+                    DELETE FROM document_change
+                    WHERE id IN (
+                        SELECT id FROM document_change
+                        WHERE changed_at < now() - make_interval(secs => :retention)
+                        LIMIT :limit
+                    )
+                    RETURNING xid, id
+                ), advanced AS (
+                    UPDATE document_change_watermark w
+                    SET xid = p.xid, id = p.id
+                    FROM (SELECT xid, id FROM purged ORDER BY xid DESC, id DESC LIMIT 1) p
+                    WHERE (p.xid, p.id) > (w.xid, w.id)
+                )
+                SELECT COUNT(*) FROM purged""",
+                new MapSqlParameterSource()
+                        .addValue("retention", retention.toSeconds())
+                        .addValue("limit", limit),
+                Integer.class);
+    }
+}
@@ -0,0 +1,150 @@
+package ru.docapp.documentapp.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+import ru.docapp.documentapp.dto.ImportResult;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
+
+@Repository
+@RequiredArgsConstructor
+public class DocumentImportRepository {
+
+    private static final String INVALID_ROW = """
+            number IS NULL OR number = '' OR length(number) > 50
+               OR date IS NULL
+               OR spec_name IS NULL OR spec_name = '' OR length(spec_name) > 255
+               OR spec_amount IS NULL OR spec_amount < 0.01""";
+
+    private static final String COPY_SQL =
+            "COPY import_staging (number, date, note, spec_name, spec_amount) FROM STDIN WITH (FORMAT csv%s)";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    public void createStaging() {
+        jdbcTemplate.execute("""
+                CREATE TEMP TABLE import_staging (
+                    line_no BIGSERIAL,
+                    number TEXT,
+                    date DATE,
+                    note TEXT,
+                    spec_name TEXT,
+                    spec_amount NUMERIC
+                ) ON COMMIT DROP""");
+    }
+
+    public long copyCsv(InputStream csv, boolean header) throws SQLException, IOException {
+        return copyManager().copyIn(COPY_SQL.formatted(header ? ", HEADER true" : ""), csv);
+    }
+
+    public OutputStream openCsvCopy() throws SQLException {
+        return new PGCopyOutputStream(copyManager().copyIn(COPY_SQL.formatted("")));
+    }
+
+    public ImportResult merge() {
+        jdbcTemplate.execute("ANALYZE import_staging");
+
+        long rowsRead = count("import_staging");
+        // documents left without a single valid row would otherwise vanish from the result
+        Long documentsRejected = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM (
+                    SELECT number
+                    FROM import_staging
+                    WHERE number IS NOT NULL AND number <> ''
+                    GROUP BY number
+                    HAVING bool_and(%s)
+                ) r""".formatted(INVALID_ROW), Long.class);
+        int rejected = jdbcTemplate.update("DELETE FROM import_staging WHERE " + INVALID_ROW);
+
+        jdbcTemplate.execute("""
+                CREATE TEMP TABLE import_specification ON COMMIT DROP AS
+                SELECT row_number() OVER (ORDER BY line_no) AS rn, number, name, amount, CAST(NULL AS BIGINT) AS id
+                FROM (
+                    SELECT DISTINCT ON (number, spec_name) line_no, number, spec_name AS name, round(spec_amount, 2) AS amount
+                    FROM import_staging
+                    ORDER BY number, spec_name, line_no
+                ) s""");
+        jdbcTemplate.execute("""
+                CREATE TEMP TABLE import_document ON COMMIT DROP AS
+                SELECT row_number() OVER (ORDER BY d.line_no) AS rn, d.number, d.date, d.note, a.amount,
+                       CAST(NULL AS BIGINT) AS id
+                FROM (
+                    SELECT DISTINCT ON (number) line_no, number, date, note
+                    FROM import_staging
+                    ORDER BY number, line_no
+                ) d
+                JOIN (
+                    SELECT number, SUM(amount) AS amount
+                    FROM import_specification
+                    GROUP BY number
+                ) a ON a.number = d.number""");
+
+        allocateIds("import_document", "document_seq");
+        allocateIds("import_specification", "specification_seq");
+
+        return jdbcTemplate.queryForObject("""
+                WITH inserted AS (
+                    INSERT INTO document (id, number, date, amount, note)
+                    SELECT id, number, date, amount, note
+                    FROM import_document d
+                    WHERE NOT EXISTS (SELECT 1 FROM archived_document a WHERE a.number = d.number)
+                    ORDER BY rn
+                    ON CONFLICT (number) DO NOTHING
+                    RETURNING id, number
+                ), specs AS (
+                    INSERT INTO specification (id, document_id, name, amount)
+                    SELECT s.id, i.id, s.name, s.amount
+                    FROM import_specification s
+                    JOIN inserted i ON i.number = s.number
+                    RETURNING 1
+                ), duplicates AS (
+                    INSERT INTO duplicate_log (entity_type, duplicate_value, context)
+                    SELECT 'DOCUMENT', d.number, 'Bulk import failed - duplicate key'
+                    FROM import_document d
+                    WHERE NOT EXISTS (SELECT 1 FROM inserted i WHERE i.number = d.number)
+                    RETURNING 1
+                )
+                SELECT (SELECT COUNT(*) FROM inserted) AS documents,
+                       (SELECT COUNT(*) FROM specs) AS specifications,
+                       (SELECT COUNT(*) FROM duplicates) AS duplicates""",
+                (rs, rowNum) -> new ImportResult(
+                        rowsRead,
+                        rejected,
+                        documentsRejected == null ? 0 : documentsRejected,
+                        rs.getLong("documents"),
+                        rs.getLong("specifications"),
+                        rs.getLong("duplicates")
+                ));
+    }
+
+    private void allocateIds(String table, String sequence) {
+        jdbcTemplate.update(("""
+                WITH blocks AS (
+                    SELECT row_number() OVER () - 1 AS block, nextval('%2$s') AS start
+                    FROM generate_series(1, CAST(CEIL((SELECT COUNT(*) FROM %1$s) / %3$d.0) AS INT))
+                )
+                UPDATE %1$s t
+                SET id = b.start + (t.rn - 1) %% %3$d
+                FROM blocks b
+                WHERE b.block = (t.rn - 1) / %3$d""").formatted(table, sequence, DocumentBatchRepository.ID_ALLOCATION_SIZE));
+    }
+
+    private long count(String table) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private CopyManager copyManager() throws SQLException {
+        return DataSourceUtils.getConnection(dataSource).unwrap(PGConnection.class).getCopyAPI();
+    }
+}
@@ -0,0 +1,369 @@
+package ru.docapp.documentapp.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.docapp.documentapp.dto.DocumentCursor;
+import ru.docapp.documentapp.dto.DocumentFilter;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+import ru.docapp.documentapp.dto.DocumentSearchHit;
+import ru.docapp.documentapp.dto.DocumentSnapshot;
+import ru.docapp.documentapp.dto.SpecificationResponseDto;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class DocumentQueryRepository {
+
+    private static final String ACTIVE_DETAIL = """
+            document d
+            LEFT JOIN specification s ON s.document_id = d.id""";
+
+    // the directory row supplies the date, so only one archive partition is probed
+    private static final String ARCHIVED_DETAIL = """
+            archived_document a
+            JOIN document_archive d ON d.id = a.id AND d.date = a.date
+            LEFT JOIN specification_archive s ON s.document_id = d.id AND s.document_date = d.date""";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public List<DocumentResponseDto> findPage(DocumentFilter filter, DocumentCursor after, int limit) {
+        return findPage("document", filter, after, limit);
+    }
+
+    /**
+     * Same as {@link #findPage} over the archive; date filters prune it to the matching monthly partitions.
+     */
+    public List<DocumentResponseDto> findArchivedPage(DocumentFilter filter, DocumentCursor after, int limit) {
+        return findPage("document_archive", filter, after, limit);
+    }
+
+    private List<DocumentResponseDto> findPage(String table, DocumentFilter filter, DocumentCursor after, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id, number, date, amount, note FROM " + table + " WHERE 1 = 1");
+        MapSqlParameterSource params = new MapSqlParameterSource();
+
+        if (filter.dateFrom() != null) {
+            sql.append(" AND date >= :dateFrom");
+            params.addValue("dateFrom", filter.dateFrom());
+        }
+        if (filter.dateTo() != null) {
+            sql.append(" AND date <= :dateTo");
+            params.addValue("dateTo", filter.dateTo());
+        }
+        if (filter.numberPrefix() != null && !filter.numberPrefix().isEmpty()) {
+            sql.append(" AND number LIKE :numberPrefix ESCAPE '\\'");
+            params.addValue("numberPrefix", escapeLike(filter.numberPrefix()) + "%");
+        }
+        if (filter.amountMin() != null) {
+            sql.append(" AND amount >= :amountMin");
+            params.addValue("amountMin", filter.amountMin());
+        }
+        if (filter.amountMax() != null) {
+            sql.append(" AND amount <= :amountMax");
+            params.addValue("amountMax", filter.amountMax());
+        }
+        if (after != null) {
+            sql.append(" AND (date, id) < (:afterDate, :afterId)");
+            params.addValue("afterDate", after.date());
+            params.addValue("afterId", after.id());
+        }
+        sql.append(" ORDER BY date DESC, id DESC LIMIT :limit");
+        params.addValue("limit", limit);
+
+        return jdbcTemplate.query(sql.toString(), params, (rs, rowNum) -> new DocumentResponseDto(
+                rs.getLong("id"),
+                rs.getString("number"),
+                rs.getObject("date", LocalDate.class),
+                rs.getBigDecimal("amount"),
+                rs.getString("note"),
+                null
+        ));
+    }
+
+    public Map<Long, List<SpecificationResponseDto>> findSpecificationsByDocumentIds(Collection<Long> documentIds) {
+        Map<Long, List<SpecificationResponseDto>> result = new HashMap<>();
+        if (documentIds.isEmpty()) {
+            return result;
+        }
+        jdbcTemplate.query(
+                "SELECT id, document_id, name, amount FROM specification WHERE document_id IN (:ids) ORDER BY document_id, id",
+                Map.of("ids", documentIds),
+                rs -> {
+                    result.computeIfAbsent(rs.getLong("document_id"), k -> new ArrayList<>())
+                            .add(new SpecificationResponseDto(
+                                    rs.getLong("id"),
+                                    rs.getString("name"),
+                                    rs.getBigDecimal("amount")
+                            ));
+                }
+        );
+        return result;
+    }
+
+    public Map<Long, List<SpecificationResponseDto>> findArchivedSpecificationsByDocuments(
+            Collection<DocumentResponseDto> documents) {
+        Map<Long, List<SpecificationResponseDto>> result = new HashMap<>();
+        if (documents.isEmpty()) {
+            return result;
+        }
+        // the date range of the page restricts the scan to its partitions
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", documents.stream().map(DocumentResponseDto::id).toList())
+                .addValue("from", documents.stream().map(DocumentResponseDto::date).min(LocalDate::compareTo).orElseThrow())
+                .addValue("to", documents.stream().map(DocumentResponseDto::date).max(LocalDate::compareTo).orElseThrow());
+        jdbcTemplate.query("""
+                SELECT id, document_id, name, amount
+                FROM specification_archive
+                WHERE document_date BETWEEN :from AND :to AND document_id IN (:ids)
+                ORDER BY document_id, id""",
+                params,
+                rs -> {
+                    result.computeIfAbsent(rs.getLong("document_id"), k -> new ArrayList<>())
+                            .add(new SpecificationResponseDto(
+                                    rs.getLong("id"),
+                                    rs.getString("name"),
+                                    rs.getBigDecimal("amount")
+                            ));
+                }
+        );
+        return result;
+    }
+
+    public Optional<DocumentSnapshot> findDetailById(Long id) {
+        return findDetail(ACTIVE_DETAIL, "d.id = :key", id);
+    }
+
+    public Optional<DocumentSnapshot> findArchivedDetailById(Long id) {
+        return findDetail(ARCHIVED_DETAIL, "a.id = :key", id);
+    }
+
+    /**
+     * Resolves a live or archived document number to its id.
+     */
+    public Optional<Long> findIdByNumber(String number) {
+        return jdbcTemplate.query("""
+                SELECT id FROM document WHERE number = :number
+                UNION ALL
+                SELECT id FROM archived_document WHERE number = :number
+                LIMIT 1""",
+                Map.of("number", number),
+                (rs, rowNum) -> rs.getLong(1)
+        ).stream().findFirst();
+    }
+
+    public Optional<Long> findArchivedVersionById(Long id) {
+        return jdbcTemplate.query("""
+                SELECT d.version
+                FROM archived_document a
+                JOIN document_archive d ON d.id = a.id AND d.date = a.date
+                WHERE a.id = :id""",
+                Map.of("id", id),
+                (rs, rowNum) -> rs.getLong(1)
+        ).stream().findFirst();
+    }
+
+    public List<DocumentSearchHit> search(String query, int limit, int offset) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("q", query)
+                .addValue("pattern", "%" + escapeLike(query) + "%")
+                .addValue("limit", limit)
+                .addValue("offset", offset);
+        return jdbcTemplate.query("""
+                WITH q AS (
+                    SELECT websearch_to_tsquery('russian', :q) AS query,
+                           websearch_to_tsquery('simple', :q) AS simple_query
+                ), spec_hits AS (
+                    SELECT s.document_id,
+                           MAX(ts_rank(s.search_vector, q.query)) AS rank,
+                           (ARRAY_AGG(s.name ORDER BY ts_rank(s.search_vector, q.query) DESC))[1 : 5] AS names
+                    FROM specification s, q
+                    WHERE s.search_vector @@ q.query
+                    GROUP BY s.document_id
+                ), hits AS (
+                    SELECT d.id, ts_rank(d.search_vector, q.query || q.simple_query) AS rank
+                    FROM document d, q
+                    WHERE d.search_vector @@ (q.query || q.simple_query)
+                    UNION ALL
+                    SELECT d.id, 1 + similarity(d.number, :q)
+                    FROM document d
+                    WHERE d.number ILIKE :pattern ESCAPE '\\'
+                    UNION ALL
+                    SELECT document_id, rank
+                    FROM spec_hits
+                )
+                SELECT d.id, d.number, d.date, d.amount, d.note, h.rank, sh.names
+                FROM (SELECT id, SUM(rank) AS rank FROM hits GROUP BY id) h
+                JOIN document d ON d.id = h.id
+                LEFT JOIN spec_hits sh ON sh.document_id = d.id
+                ORDER BY h.rank DESC, d.id DESC
+                LIMIT :limit OFFSET :offset""",
+                params,
+                (rs, rowNum) -> {
+                    Array names = rs.getArray("names");
+                    return new DocumentSearchHit(
+                            rs.getLong("id"),
+                            rs.getString("number"),
+                            rs.getObject("date", LocalDate.class),
+                            rs.getBigDecimal("amount"),
+                            rs.getString("note"),
+                            rs.getDouble("rank"),
+                            names == null ? List.of() : List.of((String[]) names.getArray())
+                    );
+                });
+    }
+
+    private Optional<DocumentSnapshot> findDetail(String from, String condition, Object key) {
+        String sql = """
+                SELECT d.id, d.number, d.date, d.amount, d.note, d.version,
+                       s.id AS spec_id, s.name AS spec_name, s.amount AS spec_amount
+                FROM %s
+                WHERE %s
+                ORDER BY s.id""".formatted(from, condition);
+        ResultSetExtractor<Optional<DocumentSnapshot>> extractor = rs -> {
+            if (!rs.next()) {
+                return Optional.empty();
+            }
+            List<SpecificationResponseDto> specs = new ArrayList<>();
+            DocumentResponseDto document = new DocumentResponseDto(
+                    rs.getLong("id"),
+                    rs.getString("number"),
+                    rs.getObject("date", LocalDate.class),
+                    rs.getBigDecimal("amount"),
+                    rs.getString("note"),
+                    specs
+            );
+            long version = rs.getLong("version");
+            do {
+                long specId = rs.getLong("spec_id");
+                if (!rs.wasNull()) {
+                    specs.add(new SpecificationResponseDto(
+                            specId,
+                            rs.getString("spec_name"),
+                            rs.getBigDecimal("spec_amount")
+                    ));
+                }
+            } while (rs.next());
+            return Optional.of(new DocumentSnapshot(document, version));
+        };
+        return jdbcTemplate.query(sql, Map.of("key", key), extractor);
+    }
+
+    public void streamDocuments(LocalDate dateFrom, LocalDate dateTo, int fetchSize,
+                                Consumer<DocumentResponseDto> consumer) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT d.id, d.number, d.date, d.amount, d.note,
+                       s.id AS spec_id, s.name AS spec_name, s.amount AS spec_amount
+                FROM document d
+                LEFT JOIN specification s ON s.document_id = d.id
+                WHERE 1 = 1""");
+        List<Object> args = new ArrayList<>();
+        if (dateFrom != null) {
+            sql.append(" AND d.date >= ?");
+            args.add(dateFrom);
+        }
+        if (dateTo != null) {
+            sql.append(" AND d.date <= ?");
+            args.add(dateTo);
+        }
+        sql.append(" ORDER BY d.date, d.id, s.id");
+
+        DocumentRowAggregator aggregator = new DocumentRowAggregator(consumer);
+        jdbcTemplate.getJdbcTemplate().query(
+                connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    for (int i = 0; i < args.size(); i++) {
+                        ps.setObject(i + 1, args.get(i));
+                    }
+                    return ps;
+                },
+                aggregator
+        );
+        aggregator.finish();
+    }
+
+    public long countNumbers() {
+        Long count = jdbcTemplate.getJdbcTemplate().queryForObject(
+                "SELECT (SELECT COUNT(*) FROM document) + (SELECT COUNT(*) FROM archived_document)", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    public void streamNumbers(int fetchSize, Consumer<String> consumer) {
+        jdbcTemplate.getJdbcTemplate().query(
+                connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "SELECT number FROM document UNION ALL SELECT number FROM archived_document",
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(rs.getString(1))
+        );
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    private static final class DocumentRowAggregator implements RowCallbackHandler {
+
+        private final Consumer<DocumentResponseDto> consumer;
+        private DocumentResponseDto current;
+        private List<SpecificationResponseDto> currentSpecs;
+
+        private DocumentRowAggregator(Consumer<DocumentResponseDto> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong("id");
+            if (current == null || current.id() != id) {
+                finish();
+                currentSpecs = new ArrayList<>();
+                current = new DocumentResponseDto(
+                        id,
+                        rs.getString("number"),
+                        rs.getObject("date", LocalDate.class),
+                        rs.getBigDecimal("amount"),
+                        rs.getString("note"),
+                        currentSpecs
+                );
+            }
+            long specId = rs.getLong("spec_id");
+            if (!rs.wasNull()) {
+                currentSpecs.add(new SpecificationResponseDto(
+                        specId,
+                        rs.getString("spec_name"),
+                        rs.getBigDecimal("spec_amount")
+                ));
+            }
+        }
+
+        private void finish() {
+            if (current != null) {
+                consumer.accept(current);
+                current = null;
+                currentSpecs = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.docapp.documentapp.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.docapp.documentapp.dto.AmountMismatch;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compares document amounts with the sums of their specifications one id range at a time, so each statement
+ * aggregates a bounded slice of the specification index instead of the whole table.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DocumentReconciliationRepository {
+
+    private static final String EXPECTED_AMOUNTS = """
+            SELECT d.id, d.number, d.amount, COALESCE(SUM(s.amount), 0) AS expected_amount
+            FROM document d
+            LEFT JOIN specification s ON s.document_id = d.id
+            WHERE d.id >= :from AND d.id < :to
+            GROUP BY d.id
+            HAVING d.amount <> COALESCE(SUM(s.amount), 0)""";
+
+    private static final RowMapper<AmountMismatch> MISMATCH = (rs, rowNum) -> new AmountMismatch(
+            rs.getLong("id"),
+            rs.getString("number"),
+            rs.getBigDecimal("amount"),
+            rs.getBigDecimal("expected_amount")
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Returns the id range covering all documents, or empty when there are none.
+     */
+    public Optional<IdRange> findIdRange() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(
+                "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM document", Map.of(),
+                (rs, rowNum) -> rs.getObject("min_id") == null
+                        ? null
+                        : new IdRange(rs.getLong("min_id"), rs.getLong("max_id") + 1)));
+    }
+
+    public List<AmountMismatch> findMismatches(long from, long to) {
+        return jdbcTemplate.query(EXPECTED_AMOUNTS, range(from, to), MISMATCH);
+    }
+
+    /**
+     * Sets the amount of every mismatched document in the range to the sum of its specifications and bumps its
+     * version, returning the amounts before the fix. A document whose amount changed after the sums were taken is
+     * skipped: specification writes lock the document, so its amount is already current again.
+     */
+    public List<AmountMismatch> repair(long from, long to) {
+        return jdbcTemplate.query("""
+                WITH expected AS (%s)
+                UPDATE document d
+                SET amount = e.expected_amount, version = d.version + 1
+                FROM expected e
+                WHERE d.id = e.id AND d.amount = e.amount
+                RETURNING d.id, d.number, e.amount, e.expected_amount""".formatted(EXPECTED_AMOUNTS),
+                range(from, to), MISMATCH);
+    }
+
+    /**
+     * Half-open range of document ids, {@code from} inclusive and {@code to} exclusive.
+     */
+    public record IdRange(long from, long to) {
+    }
+
+    private static MapSqlParameterSource range(long from, long to) {
+        return new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+    }
+}
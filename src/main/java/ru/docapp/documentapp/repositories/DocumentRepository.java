@@ -1,9 +1,9 @@
 package ru.docapp.documentapp.repositories;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.transaction.annotation.Transactional;
 import ru.docapp.documentapp.entities.Document;
 
 import java.util.Optional;
@@ -11,8 +11,16 @@ import java.util.Optional;
 public interface DocumentRepository extends JpaRepository<Document, Long> {
     Optional<Document> findByNumber(String number);
 
-    @Modifying
-    @Transactional
-    @Query("UPDATE Document d SET d.amount = (SELECT COALESCE(SUM(s.amount), 0) FROM Specification s WHERE s.document = d) WHERE d.id = :id")
-    void updateAmountById(Long id);
+    // archived numbers stay taken
+    @Query(value = """
+            SELECT EXISTS (SELECT 1 FROM document WHERE number = :number)
+                OR EXISTS (SELECT 1 FROM archived_document WHERE number = :number)""", nativeQuery = true)
+    boolean existsByNumber(String number);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM Document d WHERE d.id = :id")
+    Optional<Document> findByIdForUpdate(Long id);
+
+    @Query("SELECT d.version FROM Document d WHERE d.id = :id")
+    Optional<Long> findVersionById(Long id);
 }
\ No newline at end of file
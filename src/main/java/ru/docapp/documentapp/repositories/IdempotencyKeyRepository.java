@@ -0,0 +1,69 @@
+package ru.docapp.documentapp.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.docapp.documentapp.dto.IdempotencyRecord;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Returns true when the key is new or expired and now belongs to the current transaction. A key claimed by a
+     * transaction that is still running blocks here until it commits or rolls back.
+     */
+    public boolean claim(String key, String requestHash, Duration ttl) {
+        return jdbcTemplate.update("""
+                INSERT INTO idempotency_key (key, request_hash, expires_at)
+                VALUES (:key, :hash, now() + make_interval(secs => :ttl))
+                ON CONFLICT (key) DO UPDATE
+                    SET request_hash = EXCLUDED.request_hash,
+                        document_id = NULL,
+                        version = NULL,
+                        response = NULL,
+                        created_at = now(),
+                        expires_at = EXCLUDED.expires_at
+                    WHERE idempotency_key.expires_at < now()""",
+                new MapSqlParameterSource()
+                        .addValue("key", key)
+                        .addValue("hash", requestHash)
+                        .addValue("ttl", ttl.toSeconds())) == 1;
+    }
+
+    public void complete(String key, long documentId, long version, byte[] response) {
+        jdbcTemplate.update(
+                "UPDATE idempotency_key SET document_id = :documentId, version = :version, response = :response WHERE key = :key",
+                new MapSqlParameterSource()
+                        .addValue("key", key)
+                        .addValue("documentId", documentId)
+                        .addValue("version", version)
+                        .addValue("response", response));
+    }
+
+    public Optional<IdempotencyRecord> find(String key) {
+        return jdbcTemplate.query(
+                "SELECT request_hash, version, response FROM idempotency_key WHERE key = :key AND response IS NOT NULL",
+                Map.of("key", key),
+                (rs, rowNum) -> new IdempotencyRecord(
+                        rs.getString("request_hash"),
+                        rs.getLong("version"),
+                        rs.getBytes("response")
+                )
+        ).stream().findFirst();
+    }
+
+    public int deleteExpired(int limit) {
+        return jdbcTemplate.update("""
+                DELETE FROM idempotency_key
+                WHERE key IN (SELECT key FROM idempotency_key WHERE expires_at < now() LIMIT :limit)""",
+                Map.of("limit", limit));
+    }
+}
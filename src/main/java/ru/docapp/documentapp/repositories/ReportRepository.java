@@ -0,0 +1,174 @@
+package ru.docapp.documentapp.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.docapp.documentapp.dto.ReportGranularity;
+import ru.docapp.documentapp.dto.ReportRebuildResult;
+import ru.docapp.documentapp.dto.ReportTotalDto;
+import ru.docapp.documentapp.dto.SpecificationNameTotalDto;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class ReportRepository {
+
+    private static final long FOLD_LOCK = 0x5245504f_52544631L;
+    private static final long REBUILD_LOCK = 0x5245504f_52544252L;
+
+    // folded totals plus the deltas appended since the last fold; both move in one transaction, so a read never
+    // sees a delta twice or not at all
+    private static final String DAILY_TOTALS = """
+            (SELECT day, document_count, total_amount FROM report_daily_summary
+             UNION ALL
+             SELECT day, document_count, total_amount FROM report_daily_delta)""";
+    private static final String SPECIFICATION_TOTALS = """
+            (SELECT day, name, specification_count, total_amount FROM report_specification_summary
+             UNION ALL
+             SELECT day, name, specification_count, total_amount FROM report_specification_delta)""";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public List<ReportTotalDto> findTotals(LocalDate from, LocalDate to, ReportGranularity granularity) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String period = granularity == ReportGranularity.MONTH ? "CAST(date_trunc('month', day) AS DATE)" : "day";
+        String sql = "SELECT " + period + " AS period, SUM(document_count) AS document_count, SUM(total_amount) AS total_amount"
+                + " FROM " + DAILY_TOTALS + " r WHERE 1 = 1" + range("day", from, to, params)
+                + " GROUP BY 1 HAVING SUM(document_count) > 0 ORDER BY 1";
+
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new ReportTotalDto(
+                rs.getObject("period", LocalDate.class),
+                rs.getLong("document_count"),
+                rs.getBigDecimal("total_amount")
+        ));
+    }
+
+    public List<SpecificationNameTotalDto> findTopSpecifications(LocalDate from, LocalDate to, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource("limit", limit);
+        String sql = "SELECT name, SUM(specification_count) AS specification_count, SUM(total_amount) AS total_amount"
+                + " FROM " + SPECIFICATION_TOTALS + " r WHERE 1 = 1" + range("day", from, to, params)
+                + " GROUP BY name HAVING SUM(specification_count) > 0"
+                + " ORDER BY specification_count DESC, total_amount DESC, name LIMIT :limit";
+
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new SpecificationNameTotalDto(
+                rs.getString("name"),
+                rs.getLong("specification_count"),
+                rs.getBigDecimal("total_amount")
+        ));
+    }
+
+    /**
+     * Moves the committed deltas into the summary tables. Runs are serialized across instances; returns -1 if
+     * another one is in progress. Buckets are upserted in (day, name) order.
+     */
+    public int foldDeltas() {
+        boolean locked = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(:key)", Map.of("key", FOLD_LOCK), Boolean.class));
+        if (!locked) {
+            return -1;
+        }
+        int daily = jdbcTemplate.update("""
+                WITH folded AS (DELETE FROM report_daily_delta RETURNING day, document_count, total_amount)
+                INSERT INTO report_daily_summary AS r (day, document_count, total_amount)
+                SELECT day, SUM(document_count), SUM(total_amount)
+                FROM folded
+                GROUP BY day
+                ORDER BY day
+                ON CONFLICT (day) DO UPDATE
+                    SET document_count = r.document_count + EXCLUDED.document_count,
+                        total_amount = r.total_amount + EXCLUDED.total_amount""", Map.of());
+        int specifications = jdbcTemplate.update("""
+                WITH folded AS (DELETE FROM report_specification_delta RETURNING day, name, specification_count, total_amount)
+                INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount)
+                SELECT day, name, SUM(specification_count), SUM(total_amount)
+                FROM folded
+                GROUP BY day, name
+                ORDER BY day, name
+                ON CONFLICT (day, name) DO UPDATE
+                    SET specification_count = r.specification_count + EXCLUDED.specification_count,
+                        total_amount = r.total_amount + EXCLUDED.total_amount""", Map.of());
+        return daily + specifications;
+    }
+
+    /**
+     * Recomputes the totals of the range from the live and archived documents and appends the difference to the current totals as
+     * deltas. Each statement reads the documents and the totals in one snapshot, and writers commit a change
+     * together with its delta, so concurrent writes are neither lost nor counted twice and writers are not locked.
+     * Rebuilds wait for each other until commit: two of them reading the same totals would apply the same correction
+     * twice. Must run in a transaction.
+     */
+    public ReportRebuildResult rebuild(LocalDate from, LocalDate to) {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(:key)", Map.of("key", REBUILD_LOCK), PreparedStatement::execute);
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String dayRange = range("day", from, to, params);
+        String dateRange = range("d.date", from, to, params);
+
+        Long daily = jdbcTemplate.queryForObject("""
+                WITH expected AS (
+                    SELECT d.date AS day, COUNT(*) AS document_count, SUM(d.amount) AS total_amount
+                    FROM (SELECT date, amount FROM document
+                          UNION ALL
+                          SELECT date, amount FROM document_archive) d
+                    WHERE 1 = 1%s
+                    GROUP BY d.date
+                ), recorded AS (
+                    SELECT day, SUM(document_count) AS document_count, SUM(total_amount) AS total_amount
+                    FROM %s r
+                    WHERE 1 = 1%s
+                    GROUP BY day
+                ), corrected AS (
+                    INSERT INTO report_daily_delta (day, document_count, total_amount)
+                    SELECT COALESCE(e.day, r.day),
+                           COALESCE(e.document_count, 0) - COALESCE(r.document_count, 0),
+                           COALESCE(e.total_amount, 0) - COALESCE(r.total_amount, 0)
+                    FROM expected e
+                    FULL JOIN recorded r ON r.day = e.day
+                    WHERE COALESCE(e.document_count, 0) <> COALESCE(r.document_count, 0)
+                       OR COALESCE(e.total_amount, 0) <> COALESCE(r.total_amount, 0)
+                )
+                SELECT COUNT(*) FROM expected""".formatted(dateRange, DAILY_TOTALS, dayRange), params, Long.class);
+        Long specifications = jdbcTemplate.queryForObject("""
+                WITH expected AS (
+                    SELECT d.date AS day, d.name, COUNT(*) AS specification_count, SUM(d.amount) AS total_amount
+                    FROM (SELECT doc.date, s.name, s.amount FROM specification s JOIN document doc ON doc.id = s.document_id
+                          UNION ALL
+                          SELECT document_date, name, amount FROM specification_archive) d
+                    WHERE 1 = 1%s
+                    GROUP BY d.date, d.name
+                ), recorded AS (
+                    SELECT day, name, SUM(specification_count) AS specification_count, SUM(total_amount) AS total_amount
+                    FROM %s r
+                    WHERE 1 = 1%s
+                    GROUP BY day, name
+                ), corrected AS (
+                    INSERT INTO report_specification_delta (day, name, specification_count, total_amount)
+                    SELECT COALESCE(e.day, r.day), COALESCE(e.name, r.name),
+                           COALESCE(e.specification_count, 0) - COALESCE(r.specification_count, 0),
+                           COALESCE(e.total_amount, 0) - COALESCE(r.total_amount, 0)
+                    FROM expected e
+                    FULL JOIN recorded r ON r.day = e.day AND r.name = e.name
+                    WHERE COALESCE(e.specification_count, 0) <> COALESCE(r.specification_count, 0)
+                       OR COALESCE(e.total_amount, 0) <> COALESCE(r.total_amount, 0)
+                )
+                SELECT COUNT(*) FROM expected""".formatted(dateRange, SPECIFICATION_TOTALS, dayRange), params, Long.class);
+        return new ReportRebuildResult(daily, specifications);
+    }
+
+    private static String range(String column, LocalDate from, LocalDate to, MapSqlParameterSource params) {
+        StringBuilder sql = new StringBuilder();
+        if (from != null) {
+            sql.append(" AND ").append(column).append(" >= :dateFrom");
+            params.addValue("dateFrom", from);
+        }
+        if (to != null) {
+            sql.append(" AND ").append(column).append(" <= :dateTo");
+            params.addValue("dateTo", to);
+        }
+        return sql.toString();
+    }
+}
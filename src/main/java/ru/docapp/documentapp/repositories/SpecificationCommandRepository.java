@@ -0,0 +1,113 @@
+package ru.docapp.documentapp.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.docapp.documentapp.dto.SpecificationChangeResult;
+import ru.docapp.documentapp.dto.SpecificationResponseDto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class SpecificationCommandRepository {
+
+    private static final RowMapper<SpecificationChangeResult> CHANGE_MAPPER = (rs, rowNum) -> new SpecificationChangeResult(
+            new SpecificationResponseDto(
+                    rs.getLong("id"),
+                    rs.getString("name"),
+                    rs.getBigDecimal("amount")
+            ),
+            rs.getBigDecimal("document_amount"),
+            rs.getLong("document_version")
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Optional<Long> lockDocument(Long documentId) {
+        List<Long> versions = jdbcTemplate.queryForList(
+                "SELECT version FROM document WHERE id = :id FOR UPDATE",
+                Map.of("id", documentId),
+                Long.class
+        );
+        return versions.stream().findFirst();
+    }
+
+    public SpecificationChangeResult insert(Long documentId, String name, BigDecimal amount) {
+        return jdbcTemplate.queryForObject("""
+                WITH inserted AS (
+                    INSERT INTO specification (document_id, name, amount)
+                    VALUES (:documentId, :name, :amount)
+                    RETURNING id, name, amount
+                ), doc AS (
+                    UPDATE document d
+                    SET amount = d.amount + i.amount, version = d.version + 1
+                    FROM inserted i
+                    WHERE d.id = :documentId
+                    RETURNING d.amount, d.version
+                )
+                SELECT i.id, i.name, i.amount, doc.amount AS document_amount, doc.version AS document_version
+                FROM inserted i, doc""",
+                new MapSqlParameterSource()
+                        .addValue("documentId", documentId)
+                        .addValue("name", name)
+                        .addValue("amount", amount),
+                CHANGE_MAPPER
+        );
+    }
+
+    public Optional<SpecificationChangeResult> update(Long documentId, Long specId, String name, BigDecimal amount) {
+        // the self-join on "o" exposes the pre-update amount, so the document total moves by the delta only
+        List<SpecificationChangeResult> rows = jdbcTemplate.query("""
+                WITH changed AS (
+                    UPDATE specification s
+                    SET name = COALESCE(CAST(:name AS VARCHAR), s.name),
+                        amount = COALESCE(CAST(:amount AS NUMERIC), s.amount)
+                    FROM specification o
+                    WHERE s.id = :specId AND s.document_id = :documentId AND o.id = s.id
+                    RETURNING s.id, s.name, s.amount, s.amount - o.amount AS delta
+                ), doc AS (
+                    UPDATE document d
+                    SET amount = d.amount + c.delta, version = d.version + 1
+                    FROM changed c
+                    WHERE d.id = :documentId
+                    RETURNING d.amount, d.version
+                )
+                SELECT c.id, c.name, c.amount, doc.amount AS document_amount, doc.version AS document_version
+                FROM changed c, doc""",
+                new MapSqlParameterSource()
+                        .addValue("documentId", documentId)
+                        .addValue("specId", specId)
+                        .addValue("name", name)
+                        .addValue("amount", amount),
+                CHANGE_MAPPER
+        );
+        return rows.stream().findFirst();
+    }
+
+    public Optional<SpecificationChangeResult> delete(Long documentId, Long specId) {
+        List<SpecificationChangeResult> rows = jdbcTemplate.query("""
+                WITH deleted AS (
+                    DELETE FROM specification
+                    WHERE id = :specId AND document_id = :documentId
+                    RETURNING id, name, amount
+                ), doc AS (
+                    UPDATE document d
+                    SET amount = d.amount - x.amount, version = d.version + 1
+                    FROM deleted x
+                    WHERE d.id = :documentId
+                    RETURNING d.amount, d.version
+                )
+                SELECT x.id, x.name, x.amount, doc.amount AS document_amount, doc.version AS document_version
+                FROM deleted x, doc""",
+                Map.of("documentId", documentId, "specId", specId),
+                CHANGE_MAPPER
+        );
+        return rows.stream().findFirst();
+    }
+}
@@ -0,0 +1,178 @@
+package ru.docapp.documentapp.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.docapp.documentapp.config.ReconciliationProperties;
+import ru.docapp.documentapp.dto.AmountMismatch;
+import ru.docapp.documentapp.dto.ReconciliationResult;
+import ru.docapp.documentapp.exceptions.ReconciliationInProgressException;
+import ru.docapp.documentapp.repositories.DocumentReconciliationRepository;
+import ru.docapp.documentapp.repositories.DocumentReconciliationRepository.IdRange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds documents whose amount drifted from the sum of their specifications, for example after manual fixes or
+ * bulk loads that bypassed the service, and optionally repairs them. The id space is split into chunks that a few
+ * workers take in turn, one short statement per chunk with a pause after each, so the job never holds more than
+ * {@code app.reconciliation.parallelism} connections or long-lived locks.
+ */
+@Service
+@Slf4j
+public class AmountReconciliationService {
+
+    private final DocumentReconciliationRepository reconciliationRepository;
+    private final DocumentCache documentCache;
+    private final ReconciliationProperties properties;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public AmountReconciliationService(DocumentReconciliationRepository reconciliationRepository,
+                                       DocumentCache documentCache,
+                                       ReconciliationProperties properties,
+                                       PlatformTransactionManager transactionManager) {
+        this.reconciliationRepository = reconciliationRepository;
+        this.documentCache = documentCache;
+        this.properties = properties;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Scheduled(cron = "${app.reconciliation.cron:0 30 4 * * *}")
+    public void reconcileScheduled() {
+        if (properties.enabled()) {
+            try {
+                reconcile(true);
+            } catch (ReconciliationInProgressException e) {
+                log.debug("Skipping scheduled amount reconciliation: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checks every document and, when {@code repair} is set, sets mismatched amounts to the sum of the
+     * specifications. Reports at most {@code app.reconciliation.max-reported} mismatches, but counts all of them.
+     */
+    public ReconciliationResult reconcile(boolean repair) {
+        if (!running.compareAndSet(false, true)) {
+            throw new ReconciliationInProgressException("Amount reconciliation is already running");
+        }
+        try {
+            return run(repair);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ReconciliationResult run(boolean repair) {
+        long started = System.nanoTime();
+        IdRange range = reconciliationRepository.findIdRange().orElse(null);
+        if (range == null) {
+            return new ReconciliationResult(repair, 0, 0, elapsedMs(started), List.of());
+        }
+
+        Progress progress = new Progress(range, repair);
+        long chunkCount = (range.to() - range.from() + properties.chunkSize() - 1) / properties.chunkSize();
+        int workers = (int) Math.max(1, Math.min(properties.parallelism(), chunkCount));
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "amount-reconciliation-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    work(progress);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Amount reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Amount reconciliation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ReconciliationResult result = new ReconciliationResult(repair, progress.chunks.get(),
+                progress.mismatched.get(), elapsedMs(started), List.copyOf(progress.reported));
+        if (result.mismatched() > 0) {
+            log.warn("{} {} documents whose amount differs from the sum of their specifications, in {} chunks",
+                    repair ? "Repaired" : "Found", result.mismatched(), result.chunks());
+        }
+        return result;
+    }
+
+    private void work(Progress progress) throws InterruptedException {
+        while (true) {
+            // chunks are taken in turn, so workers always scan disjoint ranges
+            long from = progress.next.getAndAdd(properties.chunkSize());
+            if (from >= progress.range.to()) {
+                return;
+            }
+            long to = Math.min(from + properties.chunkSize(), progress.range.to());
+            List<AmountMismatch> found = progress.repair
+                    ? transaction.execute(status -> reconciliationRepository.repair(from, to))
+                    : readOnlyTransaction.execute(status -> reconciliationRepository.findMismatches(from, to));
+            progress.chunks.incrementAndGet();
+            if (!found.isEmpty()) {
+                if (progress.repair) {
+                    found.forEach(mismatch -> documentCache.evict(mismatch.id()));
+                }
+                progress.record(found, properties.maxReported());
+            }
+            if (!properties.pause().isZero()) {
+                Thread.sleep(properties.pause().toMillis());
+            }
+        }
+    }
+
+    private static long elapsedMs(long started) {
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+
+    private static final class Progress {
+
+        private final IdRange range;
+        private final boolean repair;
+        private final AtomicLong next;
+        private final AtomicInteger chunks = new AtomicInteger();
+        private final AtomicLong mismatched = new AtomicLong();
+        private final List<AmountMismatch> reported = new ArrayList<>();
+
+        private Progress(IdRange range, boolean repair) {
+            this.range = range;
+            this.repair = repair;
+            this.next = new AtomicLong(range.from());
+        }
+
+        private synchronized void record(List<AmountMismatch> found, int maxReported) {
+            mismatched.addAndGet(found.size());
+            for (int i = 0; i < found.size() && reported.size() < maxReported; i++) {
+                reported.add(found.get(i));
+            }
+        }
+    }
+}
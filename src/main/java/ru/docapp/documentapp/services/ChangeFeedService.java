@@ -0,0 +1,242 @@
+package ru.docapp.documentapp.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.docapp.documentapp.config.ChangeFeedProperties;
+import ru.docapp.documentapp.dto.ChangeCursor;
+import ru.docapp.documentapp.dto.DocumentChangeDto;
+import ru.docapp.documentapp.dto.DocumentChangePage;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+import ru.docapp.documentapp.dto.DocumentView;
+import ru.docapp.documentapp.dto.SpecificationResponseDto;
+import ru.docapp.documentapp.exceptions.ChangeCursorExpiredException;
+import ru.docapp.documentapp.exceptions.ChangeFeedUnavailableException;
+import ru.docapp.documentapp.repositories.DocumentChangeRepository;
+import ru.docapp.documentapp.repositories.DocumentQueryRepository;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Change feed over the document_change outbox, which database triggers fill in the same transaction as the
+ * document write, so service, batch, import and specification changes all show up without extra calls.
+ */
+@Service
+@Slf4j
+public class ChangeFeedService implements MeterBinder {
+
+    public static final String EVENT_NAME = "change";
+
+    private final DocumentChangeRepository documentChangeRepository;
+    private final DocumentQueryRepository documentQueryRepository;
+    private final ChangeFeedProperties properties;
+    private final TransactionTemplate readOnlyTransaction;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService pushExecutor;
+
+    public ChangeFeedService(DocumentChangeRepository documentChangeRepository,
+                             DocumentQueryRepository documentQueryRepository,
+                             ChangeFeedProperties properties,
+                             PlatformTransactionManager transactionManager) {
+        this.documentChangeRepository = documentChangeRepository;
+        this.documentQueryRepository = documentQueryRepository;
+        this.properties = properties;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // a slow client blocks in send; that must not hold up the shared scheduler and the jobs on it
+        AtomicInteger threads = new AtomicInteger();
+        this.pushExecutor = Executors.newFixedThreadPool(properties.pushThreads(), task -> {
+            Thread thread = new Thread(task, "change-feed-push-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        pushExecutor.shutdownNow();
+    }
+
+    public DocumentChangePage getChanges(String since, int limit, DocumentView view) {
+        ChangeCursor after = since == null || since.isBlank() ? ChangeCursor.START : ChangeCursor.decode(since);
+        int pageSize = Math.max(1, Math.min(limit, DocumentService.MAX_PAGE_SIZE));
+        return readOnlyTransaction.execute(status -> {
+            checkRetained(after);
+            return readPage(after, pageSize, view);
+        });
+    }
+
+    /**
+     * Streams changes after {@code since}, or only new ones when no cursor is given. The emitter is fed by
+     * {@link #poll()}, so an idle stream costs one indexed head lookup per poll interval.
+     */
+    public SseEmitter subscribe(String since, DocumentView view) {
+        if (subscribers.size() >= properties.maxSubscribers()) {
+            throw new ChangeFeedUnavailableException(
+                    "Change stream subscriber limit reached (" + properties.maxSubscribers() + ")");
+        }
+        ChangeCursor start = readOnlyTransaction.execute(status -> {
+            if (since == null || since.isBlank()) {
+                return documentChangeRepository.findHead().orElse(ChangeCursor.START);
+            }
+            ChangeCursor after = ChangeCursor.decode(since);
+            checkRetained(after);
+            return after;
+        });
+
+        SseEmitter emitter = new SseEmitter(properties.streamTimeout().toMillis());
+        Subscriber subscriber = new Subscriber(emitter, view, start);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${app.change-feed.poll-interval:1s}")
+    public void poll() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        ChangeCursor head;
+        try {
+            head = readOnlyTransaction.execute(status -> documentChangeRepository.findHead().orElse(null));
+        } catch (DataAccessException e) {
+            log.warn("Change feed poll failed, streams are retried on the next poll", e);
+            return;
+        }
+        if (head == null) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            // one push per stream at a time; a stream still catching up is picked up again on the next poll
+            if (!head.equals(subscriber.cursor) && subscriber.pushing.compareAndSet(false, true)) {
+                try {
+                    pushExecutor.execute(() -> {
+                        try {
+                            push(subscriber);
+                        } finally {
+                            subscriber.pushing.set(false);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    subscriber.pushing.set(false);
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.change-feed.purge-interval:1h}")
+    public void purgeExpired() {
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = documentChangeRepository.deleteOlderThan(properties.retention(), properties.purgeBatchSize());
+            purged += deleted;
+        } while (deleted == properties.purgeBatchSize());
+        if (purged > 0) {
+            log.info("Purged {} document change events older than {}", purged, properties.retention());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("documents.changes.subscribers", subscribers, List::size)
+                .description("Open document change streams")
+                .register(registry);
+    }
+
+    private void push(Subscriber subscriber) {
+        try {
+            DocumentChangePage page;
+            do {
+                ChangeCursor after = subscriber.cursor;
+                page = readOnlyTransaction.execute(status -> readPage(after, DocumentService.MAX_PAGE_SIZE, subscriber.view));
+                for (DocumentChangeDto change : Objects.requireNonNull(page).changes()) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(change.cursor())
+                            .name(EVENT_NAME)
+                            .data(change, MediaType.APPLICATION_JSON));
+                }
+                subscriber.cursor = ChangeCursor.decode(page.nextCursor());
+            } while (page.hasMore());
+        } catch (IOException | IllegalStateException e) {
+            // client went away; the servlet container reports it on the next write
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        } catch (DataAccessException e) {
+            log.warn("Change feed read failed for a stream, retrying on the next poll", e);
+        }
+    }
+
+    private void checkRetained(ChangeCursor cursor) {
+        // a caught-up cursor stays valid after its own event is purged; only missed events force a resync
+        if (!cursor.equals(ChangeCursor.START) && cursor.isBefore(documentChangeRepository.findPurgeWatermark())) {
+            throw new ChangeCursorExpiredException(
+                    "Change cursor is older than the retention period, resync from a full listing");
+        }
+    }
+
+    private DocumentChangePage readPage(ChangeCursor after, int pageSize, DocumentView view) {
+        List<DocumentChangeDto> rows = documentChangeRepository.findAfter(after, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        List<DocumentChangeDto> changes = view == DocumentView.SUMMARY ? rows : withSpecifications(rows);
+        String nextCursor = changes.isEmpty() ? after.encode() : changes.get(changes.size() - 1).cursor();
+        return new DocumentChangePage(changes, nextCursor, hasMore);
+    }
+
+    private List<DocumentChangeDto> withSpecifications(List<DocumentChangeDto> rows) {
+        Map<Long, List<SpecificationResponseDto>> specs = documentQueryRepository.findSpecificationsByDocumentIds(
+                rows.stream().filter(row -> row.document() != null).map(DocumentChangeDto::documentId).distinct().toList()
+        );
+        return rows.stream()
+                .map(row -> {
+                    DocumentResponseDto doc = row.document();
+                    return doc == null ? row : new DocumentChangeDto(
+                            row.cursor(),
+                            row.documentId(),
+                            row.operation(),
+                            row.version(),
+                            row.changedAt(),
+                            new DocumentResponseDto(doc.id(), doc.number(), doc.date(), doc.amount(), doc.note(),
+                                    specs.getOrDefault(doc.id(), List.of()))
+                    );
+                })
+                .toList();
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final DocumentView view;
+        private final AtomicBoolean pushing = new AtomicBoolean();
+        private volatile ChangeCursor cursor;
+
+        private Subscriber(SseEmitter emitter, DocumentView view, ChangeCursor cursor) {
+            this.emitter = emitter;
+            this.view = view;
+            this.cursor = cursor;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.docapp.documentapp.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.docapp.documentapp.config.ArchiveProperties;
+import ru.docapp.documentapp.dto.ArchiveResult;
+import ru.docapp.documentapp.repositories.DocumentArchiveRepository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Moves documents older than {@code app.archive.horizon} into the monthly archive partitions in short batches, so
+ * the live tables and their indexes stop growing with history. Archived documents stay readable by id and number.
+ */
+@Service
+@Slf4j
+public class DocumentArchiveService {
+
+    private final DocumentArchiveRepository documentArchiveRepository;
+    private final ArchiveProperties properties;
+    private final TransactionTemplate transaction;
+
+    public DocumentArchiveService(DocumentArchiveRepository documentArchiveRepository,
+                                  ArchiveProperties properties,
+                                  PlatformTransactionManager transactionManager) {
+        this.documentArchiveRepository = documentArchiveRepository;
+        this.properties = properties;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${app.archive.cron:0 0 3 * * *}")
+    public void archiveScheduled() {
+        if (properties.enabled()) {
+            archive(defaultCutoff());
+        }
+    }
+
+    /**
+     * Archives whole months: the cutoff is the first day of the month the horizon falls into.
+     */
+    public LocalDate defaultCutoff() {
+        return LocalDate.now().minus(properties.horizon()).withDayOfMonth(1);
+    }
+
+    public ArchiveResult archive(LocalDate cutoff) {
+        // partitions are created up front in their own transaction: attaching one locks the whole archive table
+        Boolean prepared = transaction.execute(status -> {
+            if (!documentArchiveRepository.tryLock()) {
+                return false;
+            }
+            Optional<LocalDate> oldest = documentArchiveRepository.findOldestDateBefore(cutoff);
+            oldest.ifPresent(from -> {
+                for (YearMonth month = YearMonth.from(from); month.atDay(1).isBefore(cutoff); month = month.plusMonths(1)) {
+                    documentArchiveRepository.createPartitions(month);
+                }
+            });
+            return oldest.isPresent();
+        });
+        if (!Boolean.TRUE.equals(prepared)) {
+            return new ArchiveResult(cutoff, 0, 0, 0);
+        }
+
+        long documents = 0;
+        long specifications = 0;
+        int batches = 0;
+        while (true) {
+            BatchOutcome batch = transaction.execute(status -> {
+                if (!documentArchiveRepository.tryLock()) {
+                    return null;
+                }
+                List<Long> ids = documentArchiveRepository.lockBatch(cutoff, properties.batchSize());
+                return ids.isEmpty() ? null : new BatchOutcome(ids.size(), documentArchiveRepository.moveToArchive(ids));
+            });
+            if (batch == null) {
+                break;
+            }
+            // cached responses stay valid: an archived document is served unchanged
+            documents += batch.documents();
+            specifications += batch.specifications();
+            batches++;
+        }
+        if (documents > 0) {
+            log.info("Archived {} documents with {} specifications dated before {} in {} batches",
+                    documents, specifications, cutoff, batches);
+        }
+        return new ArchiveResult(cutoff, documents, specifications, batches);
+    }
+
+    private record BatchOutcome(int documents, long specifications) {
+    }
+}
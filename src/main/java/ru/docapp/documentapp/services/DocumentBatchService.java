@@ -0,0 +1,149 @@
+package ru.docapp.documentapp.services;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.docapp.documentapp.config.BatchProperties;
+import ru.docapp.documentapp.dto.BatchItemResult;
+import ru.docapp.documentapp.dto.BatchItemStatus;
+import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.DuplicateLogEntry;
+import ru.docapp.documentapp.dto.SpecificationDto;
+import ru.docapp.documentapp.exceptions.BatchTooLargeException;
+import ru.docapp.documentapp.repositories.DocumentBatchRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+public class DocumentBatchService {
+
+    private final DocumentBatchRepository documentBatchRepository;
+    private final DuplicateLogService duplicateLogService;
+    private final DocumentMetrics documentMetrics;
+    private final DocumentNumberIndex numberIndex;
+    private final Validator validator;
+    private final BatchProperties properties;
+
+    @Transactional
+    public List<BatchItemResult> createDocuments(List<DocumentDto> dtos) {
+        if (dtos.size() > properties.maxSize()) {
+            throw new BatchTooLargeException(
+                    "Batch size " + dtos.size() + " exceeds limit " + properties.maxSize());
+        }
+
+        BatchItemResult[] results = new BatchItemResult[dtos.size()];
+        List<Integer> candidates = new ArrayList<>();
+        Set<String> batchNumbers = new HashSet<>();
+        for (int i = 0; i < dtos.size(); i++) {
+            DocumentDto dto = dtos.get(i);
+            String error = validate(dto);
+            if (error != null) {
+                results[i] = BatchItemResult.invalid(i, dto == null ? null : dto.number(), error);
+            } else if (!batchNumbers.add(dto.number())) {
+                results[i] = BatchItemResult.duplicate(i, dto.number());
+            } else {
+                candidates.add(i);
+            }
+        }
+
+        Set<String> existing = numberIndex.findExisting(
+                candidates.stream().map(i -> dtos.get(i).number()).toList(),
+                documentBatchRepository::findExistingNumbers);
+        List<Integer> toInsert = new ArrayList<>();
+        for (Integer i : candidates) {
+            if (existing.contains(dtos.get(i).number())) {
+                results[i] = BatchItemResult.duplicate(i, dtos.get(i).number());
+            } else {
+                toInsert.add(i);
+            }
+        }
+
+        List<Long> documentIds = documentBatchRepository.allocateDocumentIds(toInsert.size());
+        List<Object[]> documentRows = new ArrayList<>(toInsert.size());
+        int specCount = 0;
+        for (int k = 0; k < toInsert.size(); k++) {
+            DocumentDto dto = dtos.get(toInsert.get(k));
+            BigDecimal amount = dto.specifications().stream()
+                    .map(SpecificationDto::amount)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            documentRows.add(new Object[]{documentIds.get(k), dto.number(), dto.date(), amount, dto.note()});
+            specCount += dto.specifications().size();
+        }
+        documentBatchRepository.insertDocuments(documentRows);
+
+        // ON CONFLICT DO NOTHING silently skips numbers inserted concurrently after the existence check
+        Set<Long> inserted = documentBatchRepository.findExistingIds(documentIds);
+
+        List<Long> specIds = documentBatchRepository.allocateSpecificationIds(specCount);
+        List<Object[]> specRows = new ArrayList<>(specCount);
+        int nextSpec = 0;
+        for (int k = 0; k < toInsert.size(); k++) {
+            int i = toInsert.get(k);
+            DocumentDto dto = dtos.get(i);
+            Long documentId = documentIds.get(k);
+            if (!inserted.contains(documentId)) {
+                results[i] = BatchItemResult.duplicate(i, dto.number());
+                continue;
+            }
+            for (SpecificationDto spec : dto.specifications()) {
+                specRows.add(new Object[]{specIds.get(nextSpec++), documentId, spec.name(), spec.amount()});
+            }
+            results[i] = BatchItemResult.created(i, dto.number(), documentId);
+            numberIndex.added(dto.number());
+        }
+        documentBatchRepository.insertSpecifications(specRows);
+
+        int duplicates = 0;
+        for (BatchItemResult result : results) {
+            if (result.status() == BatchItemStatus.DUPLICATE) {
+                duplicates++;
+                duplicateLogService.logDuplicate(
+                        new DuplicateLogEntry("DOCUMENT", result.number(),
+                                "Batch create failed - duplicate key")
+                );
+            }
+        }
+        documentMetrics.duplicates("batch", duplicates);
+        return Arrays.asList(results);
+    }
+
+    private String validate(DocumentDto dto) {
+        if (dto == null) {
+            return "Document is required";
+        }
+        List<String> errors = new ArrayList<>(messages(validator.validate(dto), ""));
+        if (dto.specifications() != null) {
+            for (int i = 0; i < dto.specifications().size(); i++) {
+                SpecificationDto spec = dto.specifications().get(i);
+                if (spec == null) {
+                    errors.add("specifications[" + i + "]: must not be null");
+                } else {
+                    errors.addAll(messages(validator.validate(spec), "specifications[" + i + "]."));
+                }
+            }
+        }
+        if (!errors.isEmpty()) {
+            return String.join("; ", errors);
+        }
+        long distinctNames = dto.specifications().stream().map(SpecificationDto::name).distinct().count();
+        if (distinctNames != dto.specifications().size()) {
+            return "specifications: names must be unique within a document";
+        }
+        return null;
+    }
+
+    private static <T> List<String> messages(Set<ConstraintViolation<T>> violations, String prefix) {
+        return violations.stream()
+                .map(v -> prefix + v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .toList();
+    }
+}
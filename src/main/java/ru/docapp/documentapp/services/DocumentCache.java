@@ -0,0 +1,109 @@
+package ru.docapp.documentapp.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.docapp.documentapp.config.DocumentCacheProperties;
+import ru.docapp.documentapp.dto.CacheStatsDto;
+import ru.docapp.documentapp.dto.CachedDocument;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+@Component
+public class DocumentCache implements MeterBinder {
+
+    private final boolean enabled;
+    private final Cache<Long, CachedDocument> byId;
+    private final Map<String, Long> idByNumber = new ConcurrentHashMap<>();
+
+    public DocumentCache(DocumentCacheProperties properties) {
+        this.enabled = properties.enabled();
+        this.byId = Caffeine.newBuilder()
+                .maximumWeight(properties.maxSize().toBytes())
+                .weigher((Long id, CachedDocument doc) -> doc.json().length)
+                .expireAfterWrite(properties.ttl())
+                .evictionListener((Long id, CachedDocument doc, RemovalCause cause) -> {
+                    if (id != null && doc != null) {
+                        idByNumber.remove(doc.document().number(), id);
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public CachedDocument getById(Long id, Function<Long, CachedDocument> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        CachedDocument doc = byId.get(id, loader);
+        idByNumber.put(doc.document().number(), id);
+        return doc;
+    }
+
+    public CachedDocument getIfPresent(Long id) {
+        return enabled ? byId.getIfPresent(id) : null;
+    }
+
+    /**
+     * Returns the cached document with this number. Misses are loaded through {@link #getById}, never put
+     * directly: a put could bring back a state that an update evicted while it was being loaded.
+     */
+    public CachedDocument getIfPresent(String number) {
+        if (!enabled) {
+            return null;
+        }
+        Long id = idByNumber.get(number);
+        if (id == null) {
+            return null;
+        }
+        CachedDocument cached = byId.getIfPresent(id);
+        return cached != null && cached.document().number().equals(number) ? cached : null;
+    }
+
+    public void evict(Long id) {
+        remove(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a concurrent reader may have reloaded the old state before the writing transaction committed
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(id);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, byId, "documents");
+    }
+
+    public CacheStatsDto stats() {
+        CacheStats stats = byId.stats();
+        return new CacheStatsDto(
+                byId.estimatedSize(),
+                byId.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount(),
+                stats.evictionWeight()
+        );
+    }
+
+    private void remove(Long id) {
+        CachedDocument removed = byId.asMap().remove(id);
+        if (removed != null) {
+            idByNumber.remove(removed.document().number(), id);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.docapp.documentapp.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.docapp.documentapp.config.ExportProperties;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+import ru.docapp.documentapp.dto.DocumentFormat;
+import ru.docapp.documentapp.dto.SpecificationResponseDto;
+import ru.docapp.documentapp.repositories.DocumentQueryRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+@Service
+@Slf4j
+public class DocumentExportService {
+
+    private static final String CSV_HEADER =
+            "document_id,number,date,document_amount,note,specification_id,specification_name,specification_amount";
+
+    private final DocumentQueryRepository documentQueryRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExportProperties properties;
+
+    public DocumentExportService(DocumentQueryRepository documentQueryRepository,
+                                 ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager,
+                                 ExportProperties properties) {
+        this.documentQueryRepository = documentQueryRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+    }
+
+    public void export(LocalDate dateFrom, LocalDate dateTo, DocumentFormat format, OutputStream out) throws IOException {
+        try {
+            switch (format) {
+                case NDJSON -> exportNdjson(dateFrom, dateTo, out);
+                case CSV -> exportCsv(dateFrom, dateTo, out);
+            }
+        } catch (UncheckedIOException e) {
+            log.warn("Document export aborted: {}", e.getCause().getMessage());
+            throw e.getCause();
+        }
+    }
+
+    private void exportNdjson(LocalDate dateFrom, LocalDate dateTo, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            stream(dateFrom, dateTo, doc -> {
+                DocumentJsonWriter.writeDocument(generator, doc);
+                generator.writeRaw('\n');
+            });
+        }
+    }
+
+    private void exportCsv(LocalDate dateFrom, LocalDate dateTo, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        stream(dateFrom, dateTo, doc -> {
+            if (doc.specifications().isEmpty()) {
+                writeCsvRow(writer, doc, null);
+            }
+            for (SpecificationResponseDto spec : doc.specifications()) {
+                writeCsvRow(writer, doc, spec);
+            }
+        });
+        writer.flush();
+    }
+
+    private void stream(LocalDate dateFrom, LocalDate dateTo, DocumentSink sink) {
+        readOnlyTransaction.executeWithoutResult(status ->
+                documentQueryRepository.streamDocuments(dateFrom, dateTo, properties.fetchSize(), doc -> {
+                    try {
+                        sink.write(doc);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+        );
+    }
+
+    private static void writeCsvRow(Writer writer, DocumentResponseDto doc, SpecificationResponseDto spec)
+            throws IOException {
+        writer.write(String.valueOf(doc.id()));
+        writer.write(',');
+        writer.write(Csv.escape(doc.number()));
+        writer.write(',');
+        writer.write(doc.date().toString());
+        writer.write(',');
+        writer.write(doc.amount().toPlainString());
+        writer.write(',');
+        writer.write(Csv.escape(doc.note()));
+        writer.write(',');
+        if (spec != null) {
+            writer.write(String.valueOf(spec.id()));
+            writer.write(',');
+            writer.write(Csv.escape(spec.name()));
+            writer.write(',');
+            writer.write(spec.amount().toPlainString());
+        } else {
+            writer.write(",,");
+        }
+        writer.write('\n');
+    }
+
+    @FunctionalInterface
+    private interface DocumentSink {
+        void write(DocumentResponseDto doc) throws IOException;
+    }
+}
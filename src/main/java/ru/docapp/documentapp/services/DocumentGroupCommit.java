@@ -0,0 +1,206 @@
+package ru.docapp.documentapp.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import ru.docapp.documentapp.config.AdmissionProperties;
+import ru.docapp.documentapp.config.GroupCommitProperties;
+import ru.docapp.documentapp.dto.CachedDocument;
+import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.exceptions.DuplicateDocumentNumberException;
+import ru.docapp.documentapp.exceptions.ServiceOverloadedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Group commit for single-document creates: concurrent requests wait up to {@code app.group-commit.max-wait} for
+ * each other and are inserted by one writer thread in one transaction, so hundreds of creates per second share a
+ * handful of commits instead of paying one each.
+ */
+@Service
+@Slf4j
+public class DocumentGroupCommit implements MeterBinder {
+
+    private final DocumentService documentService;
+    private final DocumentMetrics documentMetrics;
+    private final GroupCommitProperties properties;
+    private final AdmissionProperties admissionProperties;
+    private final BlockingQueue<PendingCreate> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public DocumentGroupCommit(DocumentService documentService,
+                               DocumentMetrics documentMetrics,
+                               GroupCommitProperties properties,
+                               AdmissionProperties admissionProperties) {
+        this.documentService = documentService;
+        this.documentMetrics = documentMetrics;
+        this.properties = properties;
+        this.admissionProperties = admissionProperties;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.enabled()) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::commitLoop, "document-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+            writer.join();
+        }
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Creates the document in the next group and waits for its commit. Fails like
+     * {@link DocumentService#createDocument} does, independently of the other requests in the group.
+     */
+    public CachedDocument createDocument(DocumentDto dto) {
+        if (!running) {
+            return documentService.createDocument(dto);
+        }
+        PendingCreate pending = new PendingCreate(dto, new CompletableFuture<>());
+        queue.add(pending);
+        if (!running && queue.remove(pending)) {
+            // the writer stopped after the check above and will not take it
+            return documentService.createDocument(dto);
+        }
+        try {
+            return pending.result().get(properties.timeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (queue.remove(pending)) {
+                // never reached the writer, so it is safe to create it here
+                return documentService.createDocument(dto);
+            }
+            // the writer holds it, so the document may still be committed after this response
+            throw new ServiceOverloadedException("Group commit did not complete within " + properties.timeout()
+                    + "; the document may still be created, check by number before retrying",
+                    admissionProperties.retryAfter());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the group commit", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Group commit failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("documents.group-commit.pending", queue, BlockingQueue::size)
+                .description("Document creations waiting for the next group commit")
+                .register(registry);
+    }
+
+    private void commitLoop() {
+        List<PendingCreate> group = new ArrayList<>(properties.maxBatchSize());
+        try {
+            gatherAndCommit(group);
+        } finally {
+            running = false;
+            // whatever is still here, after an Error or a request that raced with stop(), would wait forever
+            queue.drainTo(group);
+            IllegalStateException stopped = new IllegalStateException("Group commit writer stopped");
+            group.forEach(pending -> pending.result().completeExceptionally(stopped));
+        }
+    }
+
+    private void gatherAndCommit(List<PendingCreate> group) {
+        while (running || !queue.isEmpty()) {
+            try {
+                group.add(queue.take());
+                long deadline = System.nanoTime() + properties.maxWait().toNanos();
+                while (group.size() < properties.maxBatchSize()) {
+                    queue.drainTo(group, properties.maxBatchSize() - group.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (group.size() >= properties.maxBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    PendingCreate next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                // shutting down: commit what was gathered, then drain the rest without waiting
+                queue.drainTo(group, properties.maxBatchSize() - group.size());
+            }
+            commit(group);
+            group.clear();
+        }
+    }
+
+    private void commit(List<PendingCreate> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        List<CachedDocument> created;
+        try {
+            created = documentService.createDocuments(group.stream().map(PendingCreate::dto).toList());
+        } catch (DataIntegrityViolationException e) {
+            // a number was taken concurrently after the pre-check; only the single-document path can tell whose
+            log.debug("Group of {} creates conflicted, committing them one by one", group.size(), e);
+            documentMetrics.groupCommit(group.size(), true);
+            group.forEach(this::commitAlone);
+            return;
+        } catch (Throwable e) {
+            group.forEach(pending -> pending.result().completeExceptionally(e));
+            if (e instanceof Error error) {
+                throw error;
+            }
+            return;
+        }
+        documentMetrics.groupCommit(group.size(), false);
+        for (int i = 0; i < group.size(); i++) {
+            CachedDocument document = created.get(i);
+            if (document == null) {
+                group.get(i).result().completeExceptionally(
+                        new DuplicateDocumentNumberException("Document number already exists"));
+            } else {
+                group.get(i).result().complete(document);
+            }
+        }
+    }
+
+    private void commitAlone(PendingCreate pending) {
+        try {
+            pending.result().complete(documentService.createDocument(pending.dto()));
+        } catch (Throwable e) {
+            pending.result().completeExceptionally(e);
+            if (e instanceof Error error) {
+                throw error;
+            }
+        }
+    }
+
+    private record PendingCreate(DocumentDto dto, CompletableFuture<CachedDocument> result) {
+    }
+}
@@ -0,0 +1,91 @@
+package ru.docapp.documentapp.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.DocumentFormat;
+import ru.docapp.documentapp.dto.ImportResult;
+import ru.docapp.documentapp.dto.SpecificationDto;
+import ru.docapp.documentapp.exceptions.ImportFailedException;
+import ru.docapp.documentapp.repositories.DocumentImportRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentImportService {
+
+    private final DocumentImportRepository documentImportRepository;
+    private final ObjectMapper objectMapper;
+    private final DocumentMetrics documentMetrics;
+    private final DocumentNumberIndex numberIndex;
+
+    @Transactional
+    public ImportResult importDocuments(DocumentFormat format, InputStream in) throws IOException {
+        documentImportRepository.createStaging();
+        try {
+            switch (format) {
+                case CSV -> documentImportRepository.copyCsv(in, true);
+                case NDJSON -> copyNdjson(in);
+            }
+        } catch (SQLException e) {
+            throw new ImportFailedException("Import failed: " + e.getMessage(), e);
+        } catch (JsonProcessingException e) {
+            throw new ImportFailedException("Import failed: " + e.getOriginalMessage(), e);
+        }
+
+        ImportResult result = documentImportRepository.merge();
+        documentMetrics.duplicates("import", result.duplicates());
+        if (result.documentsCreated() > 0) {
+            // imported numbers are not returned row by row, so the filter is rebuilt once the merge commits
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    numberIndex.rebuildAsync();
+                }
+            });
+        }
+        log.info("Bulk import finished: {}", result);
+        return result;
+    }
+
+    private void copyNdjson(InputStream in) throws SQLException, IOException {
+        try (OutputStream copy = documentImportRepository.openCsvCopy();
+             Writer writer = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8));
+             MappingIterator<DocumentDto> documents = objectMapper.readerFor(DocumentDto.class).readValues(in)) {
+            while (documents.hasNextValue()) {
+                DocumentDto dto = documents.nextValue();
+                if (dto == null || dto.specifications() == null) {
+                    continue;
+                }
+                for (SpecificationDto spec : dto.specifications()) {
+                    writer.write(Csv.escape(dto.number()));
+                    writer.write(',');
+                    writer.write(dto.date() == null ? "" : dto.date().toString());
+                    writer.write(',');
+                    writer.write(Csv.escape(dto.note()));
+                    writer.write(',');
+                    writer.write(spec == null ? "" : Csv.escape(spec.name()));
+                    writer.write(',');
+                    writer.write(spec == null || spec.amount() == null ? "" : spec.amount().toPlainString());
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+}
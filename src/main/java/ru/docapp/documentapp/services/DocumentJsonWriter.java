@@ -0,0 +1,81 @@
+package ru.docapp.documentapp.services;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+import ru.docapp.documentapp.dto.SpecificationResponseDto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Writes {@link DocumentResponseDto} field by field, without bean introspection, to any Jackson generator, so the
+ * same code produces JSON and CBOR. The output matches what the Boot-configured ObjectMapper writes for the record.
+ */
+public final class DocumentJsonWriter {
+
+    // a document with a handful of specifications fits without growing the buffer
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private DocumentJsonWriter() {
+    }
+
+    public static void writeDocuments(JsonGenerator generator, List<DocumentResponseDto> documents) throws IOException {
+        generator.writeStartArray(documents, documents.size());
+        for (DocumentResponseDto document : documents) {
+            writeDocument(generator, document);
+        }
+        generator.writeEndArray();
+    }
+
+    public static void writeDocument(JsonGenerator generator, DocumentResponseDto document) throws IOException {
+        generator.writeStartObject();
+        writeNumberField(generator, "id", document.id());
+        generator.writeStringField("number", document.number());
+        generator.writeStringField("date", document.date() == null ? null : document.date().toString());
+        writeNumberField(generator, "amount", document.amount());
+        generator.writeStringField("note", document.note());
+        List<SpecificationResponseDto> specifications = document.specifications();
+        if (specifications != null) {
+            generator.writeFieldName("specifications");
+            generator.writeStartArray(specifications, specifications.size());
+            for (SpecificationResponseDto spec : specifications) {
+                generator.writeStartObject();
+                writeNumberField(generator, "id", spec.id());
+                generator.writeStringField("name", spec.name());
+                writeNumberField(generator, "amount", spec.amount());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    public static byte[] toBytes(JsonFactory factory, DocumentResponseDto document) {
+        ByteArrayBuilder buffer = new ByteArrayBuilder(INITIAL_BUFFER_SIZE);
+        try (JsonGenerator generator = factory.createGenerator(buffer, JsonEncoding.UTF8)) {
+            writeDocument(generator, document);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void writeNumberField(JsonGenerator generator, String name, Long value) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static void writeNumberField(JsonGenerator generator, String name, BigDecimal value) throws IOException {
+        generator.writeFieldName(name);
+        generator.writeNumber(value);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.docapp.documentapp.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class DocumentMetrics {
+
+    public static final String DUPLICATES = "documents.duplicates";
+    public static final String IDEMPOTENT_REPLAYS = "documents.idempotent.replays";
+    public static final String GROUP_COMMIT_SIZE = "documents.group-commit.size";
+
+    private final MeterRegistry meterRegistry;
+
+    public void duplicates(String operation, long count) {
+        if (count > 0) {
+            Counter.builder(DUPLICATES)
+                    .description("Rejected duplicate document numbers")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .increment(count);
+        }
+    }
+
+    public void idempotentReplay() {
+        Counter.builder(IDEMPOTENT_REPLAYS)
+                .description("Document creations answered from a stored idempotency key response")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void groupCommit(int size, boolean fallback) {
+        DistributionSummary.builder(GROUP_COMMIT_SIZE)
+                .description("Document creations committed in one transaction")
+                .tag("result", fallback ? "fallback" : "committed")
+                .register(meterRegistry)
+                .record(size);
+    }
+}
@@ -0,0 +1,316 @@
+package ru.docapp.documentapp.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.docapp.documentapp.config.NumberIndexProperties;
+import ru.docapp.documentapp.dto.NumberIndexStatsDto;
+import ru.docapp.documentapp.repositories.DocumentQueryRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bloom filter over document numbers. A negative answer means the number is certainly free and the insert goes
+ * straight to the database; a positive one is confirmed with an indexed lookup. The unique constraint stays the
+ * source of truth, so a stale or missing filter only costs the fast path, never correctness.
+ */
+@Component
+@Slf4j
+public class DocumentNumberIndex implements MeterBinder {
+
+    // deleted and renamed numbers cannot be cleared from the filter, so it is rebuilt once they pile up
+    private static final double MAX_STALE_RATIO = 0.25;
+    private static final long MIN_STALE_ENTRIES = 1_000;
+
+    private final DocumentQueryRepository documentQueryRepository;
+    private final NumberIndexProperties properties;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private final AtomicLong absent = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    private volatile NumberFilter filter;
+    private volatile NumberFilter building;
+
+    public DocumentNumberIndex(DocumentQueryRepository documentQueryRepository,
+                               NumberIndexProperties properties,
+                               PlatformTransactionManager transactionManager) {
+        this.documentQueryRepository = documentQueryRepository;
+        this.properties = properties;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuildAsync();
+    }
+
+    /**
+     * Returns true only for numbers confirmed by {@code lookup}; while the filter is not built yet the check is
+     * skipped and the unique constraint decides.
+     */
+    public boolean isDuplicate(String number, Predicate<String> lookup) {
+        NumberFilter current = filter;
+        if (current == null) {
+            return false;
+        }
+        if (!current.mightContain(number)) {
+            absent.incrementAndGet();
+            return false;
+        }
+        boolean exists = lookup.test(number);
+        (exists ? duplicates : falsePositives).incrementAndGet();
+        return exists;
+    }
+
+    /**
+     * Like {@link #isDuplicate}, for a number the document {@code id} may already hold. {@code owner} resolves the
+     * number to the id holding it; the document's own number is neither a duplicate nor a false positive.
+     */
+    public boolean isTakenByOther(String number, Long id, Function<String, Optional<Long>> owner) {
+        NumberFilter current = filter;
+        if (current == null) {
+            return false;
+        }
+        if (!current.mightContain(number)) {
+            absent.incrementAndGet();
+            return false;
+        }
+        Optional<Long> holder = owner.apply(number);
+        if (holder.isEmpty()) {
+            falsePositives.incrementAndGet();
+            return false;
+        }
+        if (holder.get().equals(id)) {
+            return false;
+        }
+        duplicates.incrementAndGet();
+        return true;
+    }
+
+    public Set<String> findExisting(Collection<String> numbers, Function<Collection<String>, Set<String>> lookup) {
+        NumberFilter current = filter;
+        if (current == null) {
+            return lookup.apply(numbers);
+        }
+        List<String> candidates = numbers.stream().filter(current::mightContain).toList();
+        Set<String> existing = lookup.apply(candidates);
+        absent.addAndGet(numbers.size() - candidates.size());
+        duplicates.addAndGet(existing.size());
+        falsePositives.addAndGet(candidates.size() - existing.size());
+        return existing;
+    }
+
+    public void added(String number) {
+        NumberFilter next = building;
+        if (next != null) {
+            next.put(number);
+        }
+        NumberFilter current = filter;
+        if (current != null) {
+            current.put(number);
+            if (current.entries() > current.capacity()) {
+                rebuildAsync();
+            }
+        }
+    }
+
+    public void removed(long count) {
+        NumberFilter current = filter;
+        if (current != null
+                && current.markStale(count) > Math.max(current.entries() * MAX_STALE_RATIO, MIN_STALE_ENTRIES)) {
+            rebuildAsync();
+        }
+    }
+
+    public void rebuildAsync() {
+        if (!properties.enabled() || rebuilding.get()) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (DataAccessException e) {
+                log.warn("Document number index rebuild failed, duplicates are checked by the database only", e);
+            }
+        }, "number-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public NumberIndexStatsDto rebuild() {
+        if (!properties.enabled() || !rebuilding.compareAndSet(false, true)) {
+            return stats();
+        }
+        try {
+            long started = System.nanoTime();
+            NumberFilter next = readOnlyTransaction.execute(status -> {
+                long count = documentQueryRepository.countNumbers();
+                NumberFilter created = NumberFilter.create(
+                        Math.max(properties.expectedNumbers(), count * 2), properties.falsePositiveRate());
+                building = created;
+                documentQueryRepository.streamNumbers(properties.fetchSize(), created::put);
+                return created;
+            });
+            filter = next;
+            log.info("Document number index built: {} numbers, {} KB in {} ms",
+                    next.entries(), next.bits() / 8 / 1024,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+        return stats();
+    }
+
+    public NumberIndexStatsDto stats() {
+        NumberFilter current = filter;
+        return new NumberIndexStatsDto(
+                current != null,
+                current == null ? 0 : current.capacity(),
+                current == null ? 0 : current.entries(),
+                current == null ? 0 : current.stale(),
+                current == null ? 0 : current.bits(),
+                current == null ? 0 : current.hashes(),
+                absent.get(),
+                duplicates.get(),
+                falsePositives.get(),
+                falsePositiveRate()
+        );
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        lookupCounter(registry, "absent", absent);
+        lookupCounter(registry, "duplicate", duplicates);
+        lookupCounter(registry, "false_positive", falsePositives);
+        Gauge.builder("documents.number.index.entries", this, index -> index.stats().entries())
+                .description("Document numbers added to the duplicate pre-check filter")
+                .register(registry);
+        Gauge.builder("documents.number.index.false.positive.rate", this, DocumentNumberIndex::falsePositiveRate)
+                .description("Share of free numbers the filter reported as possibly taken")
+                .register(registry);
+    }
+
+    private double falsePositiveRate() {
+        long fp = falsePositives.get();
+        long total = fp + absent.get();
+        return total == 0 ? 0 : (double) fp / total;
+    }
+
+    private static void lookupCounter(MeterRegistry registry, String result, AtomicLong count) {
+        FunctionCounter.builder("documents.number.index.lookups", count, AtomicLong::get)
+                .description("Duplicate pre-checks by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    static final class NumberFilter {
+
+        private final AtomicLongArray words;
+        private final long bits;
+        private final int hashes;
+        private final long capacity;
+        private final AtomicLong entries = new AtomicLong();
+        private final AtomicLong stale = new AtomicLong();
+
+        private NumberFilter(long capacity, long bits, int hashes) {
+            this.capacity = capacity;
+            this.words = new AtomicLongArray((int) ((bits + 63) / 64));
+            this.bits = (long) words.length() * 64;
+            this.hashes = hashes;
+        }
+
+        static NumberFilter create(long capacity, double falsePositiveRate) {
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+            return new NumberFilter(capacity, Math.min(bits, (long) Integer.MAX_VALUE * 64), hashes);
+        }
+
+        void put(String number) {
+            long h1 = hash(number);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value = words.get(word);
+                while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+                    value = words.get(word);
+                }
+            }
+            entries.incrementAndGet();
+        }
+
+        boolean mightContain(String number) {
+            long h1 = hash(number);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long markStale(long count) {
+            return stale.addAndGet(count);
+        }
+
+        long entries() {
+            return entries.get();
+        }
+
+        long stale() {
+            return stale.get();
+        }
+
+        long capacity() {
+            return capacity;
+        }
+
+        long bits() {
+            return bits;
+        }
+
+        int hashes() {
+            return hashes;
+        }
+
+        private static long hash(String number) {
+            long h = 0xCBF29CE484222325L;
+            for (byte b : number.getBytes(StandardCharsets.UTF_8)) {
+                h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+            return mix(h);
+        }
+
+        private static long mix(long h) {
+            h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+            h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+            return h ^ (h >>> 33);
+        }
+    }
+}
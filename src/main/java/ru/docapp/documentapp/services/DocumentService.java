@@ -1,71 +1,203 @@
 package ru.docapp.documentapp.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import org.springframework.dao.DataIntegrityViolationException;
+import ru.docapp.documentapp.config.ReplicaRoutingDataSource;
+import ru.docapp.documentapp.dto.CachedDocument;
+import ru.docapp.documentapp.dto.DocumentCursor;
 import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.DocumentFilter;
+import ru.docapp.documentapp.dto.DocumentPage;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+import ru.docapp.documentapp.dto.DocumentSearchHit;
+import ru.docapp.documentapp.dto.DocumentSnapshot;
+import ru.docapp.documentapp.dto.DocumentView;
 import ru.docapp.documentapp.dto.DuplicateLogEntry;
 import ru.docapp.documentapp.dto.SpecificationDto;
+import ru.docapp.documentapp.dto.SpecificationResponseDto;
 import ru.docapp.documentapp.exceptions.DocumentNotFoundException;
+import ru.docapp.documentapp.exceptions.DocumentVersionMismatchException;
 import ru.docapp.documentapp.exceptions.DuplicateDocumentNumberException;
 import ru.docapp.documentapp.entities.Document;
 import ru.docapp.documentapp.entities.Specification;
+import ru.docapp.documentapp.repositories.DocumentBatchRepository;
+import ru.docapp.documentapp.repositories.DocumentQueryRepository;
 import ru.docapp.documentapp.repositories.DocumentRepository;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 @Service
-@RequiredArgsConstructor
+@Timed("document.service")
 public class DocumentService {
 
+    public static final int MAX_PAGE_SIZE = 500;
+
     private final DocumentRepository documentRepository;
+    private final DocumentQueryRepository documentQueryRepository;
+    private final DocumentBatchRepository documentBatchRepository;
     private final DuplicateLogService duplicateLogService;
+    private final DocumentMetrics documentMetrics;
+    private final DocumentCache documentCache;
+    private final DocumentNumberIndex numberIndex;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
 
-    @Transactional
-    public Document createDocument(DocumentDto dto) {
+    public DocumentService(DocumentRepository documentRepository,
+                           DocumentQueryRepository documentQueryRepository,
+                           DocumentBatchRepository documentBatchRepository,
+                           DuplicateLogService duplicateLogService,
+                           DocumentMetrics documentMetrics,
+                           DocumentCache documentCache,
+                           DocumentNumberIndex numberIndex,
+                           ObjectMapper objectMapper,
+                           EntityManager entityManager,
+                           PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.documentQueryRepository = documentQueryRepository;
+        this.documentBatchRepository = documentBatchRepository;
+        this.duplicateLogService = duplicateLogService;
+        this.documentMetrics = documentMetrics;
+        this.documentCache = documentCache;
+        this.numberIndex = numberIndex;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.transaction = new TransactionTemplate(transactionManager);
+        // cache hits are served without a transaction; only a miss opens one and takes a connection
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Rejects an obvious duplicate before the write transaction begins, so it costs no write connection; the unique
+     * constraint still decides numbers taken concurrently.
+     */
+    public CachedDocument createDocument(DocumentDto dto) {
+        if (numberIndex.isDuplicate(dto.number(), documentRepository::existsByNumber)) {
+            recordDuplicate("create", dto.number(), "Create failed - duplicate key");
+            throw new DuplicateDocumentNumberException("Document number already exists");
+        }
         try {
-            Document doc = mapFromDto(dto);
-            doc.recalculateAmount();
-            return documentRepository.save(doc);
+            CachedDocument created = transaction.execute(status -> {
+                Document doc = mapFromDto(dto);
+                doc.recalculateAmount();
+                return toCached(documentRepository.saveAndFlush(doc));
+            });
+            numberIndex.added(dto.number());
+            return created;
 
         } catch (DataIntegrityViolationException ex) {
-            duplicateLogService.logDuplicate(
-                    new DuplicateLogEntry("DOCUMENT", dto.number(),
-                            "Create failed - duplicate key")
-            );
-            throw new DuplicateDocumentNumberException(
-                    "Document number already exists"
-            );
+            recordDuplicate("create", dto.number(), "Create failed - duplicate key");
+            throw new DuplicateDocumentNumberException("Document number already exists");
         }
     }
 
 
+    /**
+     * Creates documents of independent requests in one transaction, letting Hibernate batch the inserts. The result
+     * holds the created document at each index, or null where the number is already taken or repeats within the
+     * group. A number inserted concurrently after the pre-check fails the whole group with
+     * {@link DataIntegrityViolationException}.
+     */
     @Transactional
-    public Document updateDocument(Long id, DocumentDto dto) {
-        Document doc = documentRepository.findById(id)
+    public List<CachedDocument> createDocuments(List<DocumentDto> dtos) {
+        Set<String> existing = numberIndex.findExisting(
+                dtos.stream().map(DocumentDto::number).toList(),
+                documentBatchRepository::findExistingNumbers);
+        Set<String> numbers = new HashSet<>();
+        List<Document> docs = new ArrayList<>(dtos.size());
+        for (DocumentDto dto : dtos) {
+            if (existing.contains(dto.number()) || !numbers.add(dto.number())) {
+                docs.add(null);
+                continue;
+            }
+            Document doc = mapFromDto(dto);
+            doc.recalculateAmount();
+            docs.add(documentRepository.save(doc));
+        }
+        documentRepository.flush();
+
+        List<CachedDocument> created = new ArrayList<>(docs.size());
+        for (int i = 0; i < docs.size(); i++) {
+            Document doc = docs.get(i);
+            if (doc == null) {
+                recordDuplicate("create", dtos.get(i).number(), "Create failed - duplicate key");
+                created.add(null);
+            } else {
+                numberIndex.added(doc.getNumber());
+                created.add(toCached(doc));
+            }
+        }
+        return created;
+    }
+
+
+    /**
+     * Like {@link #createDocument}, checks a new number before the write transaction. The lookup is skipped when the
+     * cached document shows the number is unchanged; otherwise it resolves who holds the number, so keeping its own
+     * number is not taken for a duplicate.
+     */
+    public CachedDocument updateDocument(Long id, DocumentDto dto, Long expectedVersion) {
+        CachedDocument cached = documentCache.getIfPresent(id);
+        boolean sameNumber = cached != null && cached.document().number().equals(dto.number());
+        if (!sameNumber && numberIndex.isTakenByOther(dto.number(), id, documentQueryRepository::findIdByNumber)) {
+            recordDuplicate("update", dto.number(), "Update failed - duplicate key");
+            throw new DuplicateDocumentNumberException("Document number already exists");
+        }
+        return transaction.execute(status -> update(id, dto, expectedVersion));
+    }
+
+    private CachedDocument update(Long id, DocumentDto dto, Long expectedVersion) {
+        Document doc = documentRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new DocumentNotFoundException("Not found: " + id));
+        if (expectedVersion != null && !expectedVersion.equals(doc.getVersion())) {
+            throw new DocumentVersionMismatchException(
+                    "Document " + id + " has version " + doc.getVersion() + ", expected " + expectedVersion);
+        }
+        documentCache.evict(id);
 
         doc.setDate(dto.date());
         doc.setNote(dto.note());
 
-        if (!doc.getNumber().equals(dto.number())) {
+        boolean renamed = !doc.getNumber().equals(dto.number());
+        if (renamed) {
             doc.setNumber(dto.number());
         }
 
-        syncSpecifications(doc, dto.specifications());
-
-        doc.recalculateAmount();
         try {
-            return documentRepository.save(doc);
+            syncSpecifications(doc, dto.specifications());
+
+            doc.recalculateAmount();
+            long loadedVersion = doc.getVersion();
+            documentRepository.saveAndFlush(doc);
+            if (doc.getVersion() == loadedVersion) {
+                // only specifications changed, the document row itself was not updated
+                entityManager.lock(doc, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+            }
+            if (renamed) {
+                numberIndex.added(dto.number());
+                numberIndex.removed(1);
+            }
+            return toCached(doc);
         } catch (DataIntegrityViolationException e) {
-            duplicateLogService.logDuplicate(
-                    new DuplicateLogEntry("DOCUMENT", dto.number(),
-                            "Update failed - duplicate key")
-            );
-            throw new DuplicateDocumentNumberException(
-                    "Document number already exists"
-            );
+            recordDuplicate("update", dto.number(), "Update failed - duplicate key");
+            throw new DuplicateDocumentNumberException("Document number already exists");
         }
     }
 
@@ -75,30 +207,146 @@ public class DocumentService {
             throw new DocumentNotFoundException("Document not found: " + id);
         }
         documentRepository.deleteById(id);
+        documentCache.evict(id);
+        numberIndex.removed(1);
+    }
+
+    @Transactional(readOnly = true)
+    public DocumentPage getDocumentsPage(DocumentFilter filter, String cursor, int limit, DocumentView view) {
+        DocumentCursor after = cursor == null || cursor.isBlank() ? null : DocumentCursor.decode(cursor);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        List<DocumentResponseDto> rows = documentQueryRepository.findPage(filter, after, pageSize + 1);
+        return toPage(rows, pageSize, view == DocumentView.SUMMARY ? null
+                : page -> documentQueryRepository.findSpecificationsByDocumentIds(
+                        page.stream().map(DocumentResponseDto::id).toList()));
+    }
+
+    @Transactional(readOnly = true)
+    public DocumentPage getArchivedDocumentsPage(DocumentFilter filter, String cursor, int limit, DocumentView view) {
+        DocumentCursor after = cursor == null || cursor.isBlank() ? null : DocumentCursor.decode(cursor);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        List<DocumentResponseDto> rows = documentQueryRepository.findArchivedPage(filter, after, pageSize + 1);
+        return toPage(rows, pageSize, view == DocumentView.SUMMARY ? null
+                : documentQueryRepository::findArchivedSpecificationsByDocuments);
     }
 
-    public List<Document> getAllDocuments() {
-        return documentRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<DocumentSearchHit> searchDocuments(String query, int page, int size) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return documentQueryRepository.search(query.strip(), pageSize, Math.max(0, page) * pageSize);
     }
 
-    public Document getDocumentWithSpecifications(Long id) {
-        return documentRepository.findById(id)
-                .orElseThrow(() -> new DocumentNotFoundException("Document not found: " + id));
+    public long getDocumentVersion(Long id) {
+        CachedDocument cached = documentCache.getIfPresent(id);
+        if (cached != null) {
+            return cached.version();
+        }
+        return readFromPrimary(status -> documentRepository.findVersionById(id)
+                .or(() -> documentQueryRepository.findArchivedVersionById(id))
+                .orElseThrow(() -> new DocumentNotFoundException("Document not found: " + id)));
     }
 
-    private void syncSpecifications(Document doc, List<SpecificationDto> specs) {
+    public CachedDocument getDocumentResponse(Long id) {
+        return documentCache.getById(id, key -> readFromPrimary(status -> toCached(
+                documentQueryRepository.findDetailById(key)
+                        .or(() -> documentQueryRepository.findArchivedDetailById(key))
+                        .orElseThrow(() -> new DocumentNotFoundException("Document not found: " + key)))));
+    }
 
-        doc.getSpecifications()
-                .removeIf(s -> specs.stream().noneMatch(dto -> dto.id() != null && dto.id().equals(s.getId())));
+    public CachedDocument getDocumentResponseByNumber(String number) {
+        CachedDocument cached = documentCache.getIfPresent(number);
+        if (cached != null) {
+            return cached;
+        }
+        // loading by id keeps the load atomic with evictions of that id, so a racing update cannot be overwritten
+        Long id = readFromPrimary(status -> documentQueryRepository.findIdByNumber(number)
+                .orElseThrow(() -> new DocumentNotFoundException("Document not found: " + number)));
+        CachedDocument document = getDocumentResponse(id);
+        if (!document.document().number().equals(number)) {
+            // renamed between the lookup and the load
+            throw new DocumentNotFoundException("Document not found: " + number);
+        }
+        return document;
+    }
 
-        for (var dto : specs) {
-            Specification existing = null;
+    /**
+     * Cache entries and ETag versions are served to every client until evicted or expired, so they are read from the
+     * primary: a replica lagging behind an update would otherwise stay visible for the whole TTL.
+     */
+    private <T> T readFromPrimary(TransactionCallback<T> action) {
+        return ReplicaRoutingDataSource.onPrimary(() -> readOnlyTransaction.execute(action));
+    }
+
+    private void recordDuplicate(String operation, String number, String context) {
+        documentMetrics.duplicates(operation, 1);
+        duplicateLogService.logDuplicate(new DuplicateLogEntry("DOCUMENT", number, context));
+    }
+
+    private static DocumentPage toPage(List<DocumentResponseDto> rows, int pageSize,
+                                       Function<List<DocumentResponseDto>, Map<Long, List<SpecificationResponseDto>>> specifications) {
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+
+        List<DocumentResponseDto> items = specifications == null ? rows : withSpecifications(rows, specifications.apply(rows));
+
+        String nextCursor = null;
+        if (hasMore) {
+            DocumentResponseDto last = items.get(items.size() - 1);
+            nextCursor = new DocumentCursor(last.date(), last.id()).encode();
+        }
+        return new DocumentPage(items, nextCursor);
+    }
+
+    private static List<DocumentResponseDto> withSpecifications(List<DocumentResponseDto> rows,
+                                                                Map<Long, List<SpecificationResponseDto>> specs) {
+        return rows.stream()
+                .map(row -> new DocumentResponseDto(
+                        row.id(),
+                        row.number(),
+                        row.date(),
+                        row.amount(),
+                        row.note(),
+                        specs.getOrDefault(row.id(), List.of())
+                ))
+                .toList();
+    }
 
+    void syncSpecifications(Document doc, List<SpecificationDto> specs) {
+        Map<Long, SpecificationDto> incomingById = new HashMap<>();
+        for (var dto : specs) {
             if (dto.id() != null) {
-                existing = doc.getSpecifications().stream()
-                        .filter(s -> s.getId().equals(dto.id()))
-                        .findFirst().orElse(null);
+                incomingById.put(dto.id(), dto);
             }
+        }
+
+        Map<Long, Specification> existingById = new HashMap<>();
+        Set<String> removedNames = new HashSet<>();
+        for (Iterator<Specification> it = doc.getSpecifications().iterator(); it.hasNext(); ) {
+            Specification spec = it.next();
+            if (incomingById.containsKey(spec.getId())) {
+                existingById.put(spec.getId(), spec);
+            } else {
+                removedNames.add(spec.getName());
+                it.remove();
+            }
+        }
+
+        // Hibernate flushes inserts before orphan deletes, so a re-added name would hit uq_specification_doc_name
+        boolean reusesRemovedName = specs.stream()
+                .anyMatch(dto -> !existingById.containsKey(dto.id()) && removedNames.contains(dto.name()));
+        if (reusesRemovedName) {
+            documentRepository.flush();
+        }
+
+        for (var dto : specs) {
+            Specification existing = dto.id() == null ? null : existingById.get(dto.id());
 
             if (existing == null) {
                 doc.addSpecification(
@@ -115,7 +363,35 @@ public class DocumentService {
         }
     }
 
-    private Document mapFromDto(DocumentDto dto) {
+    private CachedDocument toCached(Document doc) {
+        return toCached(new DocumentSnapshot(toResponseDto(doc), doc.getVersion()));
+    }
+
+    private CachedDocument toCached(DocumentSnapshot snapshot) {
+        return new CachedDocument(snapshot.document(), snapshot.version(),
+                DocumentJsonWriter.toBytes(objectMapper.getFactory(), snapshot.document()));
+    }
+
+    static DocumentResponseDto toResponseDto(Document doc) {
+        var specDtos = doc.getSpecifications().stream()
+                .map(spec -> new SpecificationResponseDto(
+                        spec.getId(),
+                        spec.getName(),
+                        spec.getAmount()
+                ))
+                .toList();
+
+        return new DocumentResponseDto(
+                doc.getId(),
+                doc.getNumber(),
+                doc.getDate(),
+                doc.getAmount(),
+                doc.getNote(),
+                specDtos
+        );
+    }
+
+    static Document mapFromDto(DocumentDto dto) {
         Document doc = new Document();
         doc.setNumber(dto.number());
         doc.setDate(dto.date());
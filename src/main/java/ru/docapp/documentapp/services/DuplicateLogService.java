@@ -1,37 +1,174 @@
 package ru.docapp.documentapp.services;
 
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
+import ru.docapp.documentapp.config.DuplicateLogProperties;
 import ru.docapp.documentapp.dto.DuplicateLogEntry;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
-public class DuplicateLogService {
+public class DuplicateLogService implements MeterBinder {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO duplicate_log (entity_type, duplicate_value, context, timestamp) VALUES (?, ?, ?, ?)";
 
     private final JdbcTemplate jdbcTemplate;
+    private final DuplicateLogProperties properties;
+    private final BlockingQueue<PendingEntry> queue;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public DuplicateLogService(JdbcTemplate jdbcTemplate, DuplicateLogProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.capacity());
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::drainLoop, "duplicate-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+            writer.join(properties.flushInterval().toMillis() * 2);
+        }
+        List<PendingEntry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += properties.flushSize()) {
+            write(rest.subList(from, Math.min(rest.size(), from + properties.flushSize())));
+        }
+    }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void logDuplicate(DuplicateLogEntry entry) {
+        PendingEntry pending = new PendingEntry(entry, LocalDateTime.now());
+        boolean accepted;
+        if (properties.overflowPolicy() == DuplicateLogProperties.OverflowPolicy.BLOCK) {
+            try {
+                accepted = queue.offer(pending, properties.offerTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(pending);
+        }
+        if (!accepted) {
+            dropped.incrementAndGet();
+            log.warn("Duplicate log buffer full, entry dropped: {} = {}", entry.getEntityType(), entry.getDuplicateValue());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        entryCounter(registry, "written", written);
+        entryCounter(registry, "dropped", dropped);
+        entryCounter(registry, "failed", failed);
+        Gauge.builder("duplicate.log.pending", queue, BlockingQueue::size)
+                .description("Duplicate log entries waiting to be written")
+                .register(registry);
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private static void entryCounter(MeterRegistry registry, String result, AtomicLong count) {
+        FunctionCounter.builder("duplicate.log.entries", count, AtomicLong::get)
+                .description("Duplicate log entries by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private void drainLoop() {
+        while (running) {
+            List<PendingEntry> batch = new ArrayList<>(properties.flushSize());
+            try {
+                PendingEntry first = queue.poll(properties.flushInterval().toNanos(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + properties.flushInterval().toNanos();
+                while (batch.size() < properties.flushSize()) {
+                    queue.drainTo(batch, properties.flushSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= properties.flushSize() || remaining <= 0) {
+                        break;
+                    }
+                    PendingEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                log.debug("Duplicate log writer interrupted, running = {}", running);
+            }
+            write(batch);
+        }
+    }
+
+    private void write(List<PendingEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
         try {
-            jdbcTemplate.update(
-                    "INSERT INTO duplicate_log (entity_type, duplicate_value, context, timestamp) VALUES (?, ?, ?, ?)",
-                    entry.getEntityType(),
-                    entry.getDuplicateValue(),
-                    entry.getContext(),
-                    LocalDateTime.now()
-            );
-            log.info("Duplicate logged: {} = {}", entry.getEntityType(), entry.getDuplicateValue());
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, pending) -> {
+                ps.setString(1, pending.entry().getEntityType());
+                ps.setString(2, pending.entry().getDuplicateValue());
+                ps.setString(3, pending.entry().getContext());
+                ps.setTimestamp(4, Timestamp.valueOf(pending.timestamp()));
+            });
+            written.addAndGet(batch.size());
+            log.info("Duplicates logged: {}", batch.size());
         } catch (DataAccessException e) {
-            log.error("Failed to log duplicate entry: {}", entry, e);
+            failed.addAndGet(batch.size());
+            log.error("Failed to log {} duplicate entries", batch.size(), e);
         }
     }
-}
\ No newline at end of file
+
+    private record PendingEntry(DuplicateLogEntry entry, LocalDateTime timestamp) {
+    }
+}
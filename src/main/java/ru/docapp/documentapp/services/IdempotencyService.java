@@ -0,0 +1,91 @@
+package ru.docapp.documentapp.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.docapp.documentapp.config.IdempotencyProperties;
+import ru.docapp.documentapp.dto.CachedDocument;
+import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+import ru.docapp.documentapp.dto.IdempotencyRecord;
+import ru.docapp.documentapp.dto.IdempotentResult;
+import ru.docapp.documentapp.exceptions.IdempotencyKeyReusedException;
+import ru.docapp.documentapp.exceptions.InvalidIdempotencyKeyException;
+import ru.docapp.documentapp.repositories.IdempotencyKeyRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final DocumentService documentService;
+    private final DocumentMetrics documentMetrics;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyProperties properties;
+
+    @Transactional
+    public IdempotentResult createDocument(String key, DocumentDto dto) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException(
+                    "Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = hash(dto);
+        if (idempotencyKeyRepository.claim(key, requestHash, properties.ttl())) {
+            // the key row commits or rolls back together with the document, so a failed create can be retried
+            CachedDocument created = documentService.createDocument(dto);
+            idempotencyKeyRepository.complete(key, created.document().id(), created.version(), created.json());
+            return new IdempotentResult(created, false);
+        }
+
+        IdempotencyRecord stored = idempotencyKeyRepository.find(key)
+                .orElseThrow(() -> new IllegalStateException("Idempotency key " + key + " has no stored response"));
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReusedException(
+                    "Idempotency-Key " + key + " was already used with a different request body");
+        }
+        documentMetrics.idempotentReplay();
+        try {
+            DocumentResponseDto document = objectMapper.readValue(stored.response(), DocumentResponseDto.class);
+            return new IdempotentResult(new CachedDocument(document, stored.version(), stored.response()), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval:5m}")
+    public void purgeExpired() {
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = idempotencyKeyRepository.deleteExpired(properties.purgeBatchSize());
+            purged += deleted;
+        } while (deleted == properties.purgeBatchSize());
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private String hash(DocumentDto dto) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(dto)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
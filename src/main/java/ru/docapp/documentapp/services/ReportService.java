@@ -0,0 +1,55 @@
+package ru.docapp.documentapp.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.docapp.documentapp.dto.ReportGranularity;
+import ru.docapp.documentapp.dto.ReportRebuildResult;
+import ru.docapp.documentapp.dto.ReportTotalDto;
+import ru.docapp.documentapp.dto.SpecificationNameTotalDto;
+import ru.docapp.documentapp.repositories.ReportRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReportService {
+
+    public static final int MAX_TOP_SIZE = 100;
+
+    private final ReportRepository reportRepository;
+
+    @Transactional(readOnly = true)
+    public List<ReportTotalDto> getTotals(LocalDate from, LocalDate to, ReportGranularity granularity) {
+        return reportRepository.findTotals(from, to, granularity);
+    }
+
+    @Transactional(readOnly = true)
+    public List<SpecificationNameTotalDto> getTopSpecifications(LocalDate from, LocalDate to, int limit) {
+        return reportRepository.findTopSpecifications(from, to, Math.max(1, Math.min(limit, MAX_TOP_SIZE)));
+    }
+
+    /**
+     * Write paths only append deltas, so same-day writers never wait on a summary row; this job folds them in.
+     */
+    @Scheduled(fixedDelayString = "${app.reports.fold-interval:1s}")
+    @Transactional
+    public void foldDeltas() {
+        int folded = reportRepository.foldDeltas();
+        if (folded > 0) {
+            log.debug("Folded report deltas into {} summary buckets", folded);
+        }
+    }
+
+    @Transactional
+    public ReportRebuildResult rebuild(LocalDate from, LocalDate to) {
+        ReportRebuildResult result = reportRepository.rebuild(from, to);
+        log.info("Report summaries rebuilt for [{}, {}]: {} daily buckets, {} specification buckets",
+                from, to, result.dailyBuckets(), result.specificationBuckets());
+        return result;
+    }
+}
@@ -0,0 +1,65 @@
+package ru.docapp.documentapp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.docapp.documentapp.dto.SpecificationChangeResult;
+import ru.docapp.documentapp.dto.SpecificationDto;
+import ru.docapp.documentapp.dto.SpecificationPatchDto;
+import ru.docapp.documentapp.exceptions.DocumentNotFoundException;
+import ru.docapp.documentapp.exceptions.DocumentVersionMismatchException;
+import ru.docapp.documentapp.exceptions.DuplicateSpecificationNameException;
+import ru.docapp.documentapp.exceptions.SpecificationNotFoundException;
+import ru.docapp.documentapp.repositories.SpecificationCommandRepository;
+
+@Service
+@RequiredArgsConstructor
+public class SpecificationService {
+
+    private final SpecificationCommandRepository specificationCommandRepository;
+    private final DocumentCache documentCache;
+
+    @Transactional
+    public SpecificationChangeResult addSpecification(Long documentId, SpecificationDto dto, Long expectedVersion) {
+        lockDocument(documentId, expectedVersion);
+        try {
+            return specificationCommandRepository.insert(documentId, dto.name(), dto.amount());
+        } catch (DataIntegrityViolationException e) {
+            throw new DuplicateSpecificationNameException(
+                    "Specification '" + dto.name() + "' already exists in document " + documentId);
+        }
+    }
+
+    @Transactional
+    public SpecificationChangeResult updateSpecification(Long documentId, Long specId, SpecificationPatchDto dto,
+                                                         Long expectedVersion) {
+        lockDocument(documentId, expectedVersion);
+        try {
+            return specificationCommandRepository.update(documentId, specId, dto.name(), dto.amount())
+                    .orElseThrow(() -> new SpecificationNotFoundException(
+                            "Specification not found: " + specId + " in document " + documentId));
+        } catch (DataIntegrityViolationException e) {
+            throw new DuplicateSpecificationNameException(
+                    "Specification '" + dto.name() + "' already exists in document " + documentId);
+        }
+    }
+
+    @Transactional
+    public SpecificationChangeResult deleteSpecification(Long documentId, Long specId, Long expectedVersion) {
+        lockDocument(documentId, expectedVersion);
+        return specificationCommandRepository.delete(documentId, specId)
+                .orElseThrow(() -> new SpecificationNotFoundException(
+                        "Specification not found: " + specId + " in document " + documentId));
+    }
+
+    private void lockDocument(Long documentId, Long expectedVersion) {
+        long version = specificationCommandRepository.lockDocument(documentId)
+                .orElseThrow(() -> new DocumentNotFoundException("Document not found: " + documentId));
+        if (expectedVersion != null && expectedVersion != version) {
+            throw new DocumentVersionMismatchException(
+                    "Document " + documentId + " has version " + version + ", expected " + expectedVersion);
+        }
+        documentCache.evict(documentId);
+    }
+}
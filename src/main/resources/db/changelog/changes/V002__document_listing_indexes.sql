@@ -0,0 +1,18 @@
+--liquibase formatted sql
+
+--changeset listing:2 author:mshchenyev runInTransaction:false
+--comment: Индексы для постраничного (keyset) списка документов и фильтров по дате, номеру и сумме
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_document_date_id
+    ON document (date DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_document_number_prefix
+    ON document (number varchar_pattern_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_document_amount
+    ON document (amount);
+
+
+--rollback DROP INDEX IF EXISTS idx_document_amount;
+--rollback DROP INDEX IF EXISTS idx_document_number_prefix;
+--rollback DROP INDEX IF EXISTS idx_document_date_id;
@@ -0,0 +1,22 @@
+--liquibase formatted sql
+
+--changeset ids:3 author:mshchenyev
+--comment: Перевод идентификаторов документов и спецификаций с IDENTITY на последовательности с шагом 50 для пакетной вставки
+
+ALTER TABLE document ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE document_seq INCREMENT BY 50 OWNED BY document.id;
+SELECT setval('document_seq', COALESCE((SELECT MAX(id) FROM document), 0) + 1, false);
+ALTER TABLE document ALTER COLUMN id SET DEFAULT nextval('document_seq');
+
+ALTER TABLE specification ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE specification_seq INCREMENT BY 50 OWNED BY specification.id;
+SELECT setval('specification_seq', COALESCE((SELECT MAX(id) FROM specification), 0) + 1, false);
+ALTER TABLE specification ALTER COLUMN id SET DEFAULT nextval('specification_seq');
+
+
+--rollback ALTER TABLE specification ALTER COLUMN id DROP DEFAULT;
+--rollback DROP SEQUENCE specification_seq;
+--rollback ALTER TABLE specification ALTER COLUMN id ADD GENERATED ALWAYS AS IDENTITY;
+--rollback ALTER TABLE document ALTER COLUMN id DROP DEFAULT;
+--rollback DROP SEQUENCE document_seq;
+--rollback ALTER TABLE document ALTER COLUMN id ADD GENERATED ALWAYS AS IDENTITY;
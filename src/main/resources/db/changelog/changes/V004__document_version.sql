@@ -0,0 +1,9 @@
+--liquibase formatted sql
+
+--changeset version:4 author:mshchenyev
+--comment: Версия документа для оптимистической блокировки и ETag
+
+ALTER TABLE document ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+
+--rollback ALTER TABLE document DROP COLUMN version;
@@ -0,0 +1,28 @@
+--liquibase formatted sql
+
+--changeset search:5 author:mshchenyev
+--comment: Полнотекстовый поиск по номеру, примечанию и наименованиям спецификаций, триграммный индекс по номеру
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE document
+    ADD COLUMN search_vector tsvector
+        GENERATED ALWAYS AS (
+            setweight(to_tsvector('simple', coalesce(number, '')), 'A') ||
+            setweight(to_tsvector('russian', coalesce(note, '')), 'B')
+        ) STORED;
+
+ALTER TABLE specification
+    ADD COLUMN search_vector tsvector
+        GENERATED ALWAYS AS (to_tsvector('russian', name)) STORED;
+
+CREATE INDEX idx_document_search_vector ON document USING gin (search_vector);
+CREATE INDEX idx_specification_search_vector ON specification USING gin (search_vector);
+CREATE INDEX idx_document_number_trgm ON document USING gin (number gin_trgm_ops);
+
+
+--rollback DROP INDEX IF EXISTS idx_document_number_trgm;
+--rollback DROP INDEX IF EXISTS idx_specification_search_vector;
+--rollback DROP INDEX IF EXISTS idx_document_search_vector;
+--rollback ALTER TABLE specification DROP COLUMN search_vector;
+--rollback ALTER TABLE document DROP COLUMN search_vector;
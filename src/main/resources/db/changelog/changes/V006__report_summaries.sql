@@ -0,0 +1,192 @@
+--liquibase formatted sql
+
+--changeset reports:6 author:mshchenyev
+--comment: Сводные таблицы для отчётов: итоги по дням и по наименованиям спецификаций
+
+CREATE TABLE report_daily_summary (
+                                      day DATE PRIMARY KEY,
+                                      document_count BIGINT NOT NULL DEFAULT 0,
+                                      total_amount NUMERIC(19,2) NOT NULL DEFAULT 0
+);
+
+CREATE TABLE report_specification_summary (
+                                              day DATE NOT NULL,
+                                              name VARCHAR(255) NOT NULL,
+                                              specification_count BIGINT NOT NULL DEFAULT 0,
+                                              total_amount NUMERIC(19,2) NOT NULL DEFAULT 0,
+                                              PRIMARY KEY (day, name)
+);
+
+INSERT INTO report_daily_summary (day, document_count, total_amount)
+SELECT date, COUNT(*), SUM(amount)
+FROM document
+GROUP BY date;
+
+INSERT INTO report_specification_summary (day, name, specification_count, total_amount)
+SELECT d.date, s.name, COUNT(*), SUM(s.amount)
+FROM specification s
+JOIN document d ON d.id = s.document_id
+GROUP BY d.date, s.name;
+
+
+--rollback DROP TABLE report_specification_summary;
+--rollback DROP TABLE report_daily_summary;
+
+--changeset reports:7 author:mshchenyev splitStatements:false
+--comment: Триггеры инкрементального обновления сводных таблиц (на уровне оператора, через таблицы переходов)
+
+CREATE FUNCTION report_document_changed() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO report_daily_summary AS r (day, document_count, total_amount)
+        SELECT date, COUNT(*), SUM(amount)
+        FROM new_rows
+        GROUP BY date
+        ON CONFLICT (day) DO UPDATE
+            SET document_count = r.document_count + EXCLUDED.document_count,
+                total_amount = r.total_amount + EXCLUDED.total_amount;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO report_daily_summary AS r (day, document_count, total_amount)
+        SELECT date, -COUNT(*), -SUM(amount)
+        FROM old_rows
+        GROUP BY date
+        ON CONFLICT (day) DO UPDATE
+            SET document_count = r.document_count + EXCLUDED.document_count,
+                total_amount = r.total_amount + EXCLUDED.total_amount;
+    ELSE
+        INSERT INTO report_daily_summary AS r (day, document_count, total_amount)
+        SELECT day, SUM(cnt), SUM(amt)
+        FROM (
+            SELECT o.date AS day, -1 AS cnt, -o.amount AS amt
+            FROM old_rows o JOIN new_rows n ON n.id = o.id
+            WHERE n.date <> o.date OR n.amount <> o.amount
+            UNION ALL
+            SELECT n.date, 1, n.amount
+            FROM old_rows o JOIN new_rows n ON n.id = o.id
+            WHERE n.date <> o.date OR n.amount <> o.amount
+        ) c
+        GROUP BY day
+        ON CONFLICT (day) DO UPDATE
+            SET document_count = r.document_count + EXCLUDED.document_count,
+                total_amount = r.total_amount + EXCLUDED.total_amount;
+
+        INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount)
+        SELECT day, name, SUM(cnt), SUM(amt)
+        FROM (
+            SELECT o.date AS day, s.name, -1 AS cnt, -s.amount AS amt
+            FROM old_rows o
+            JOIN new_rows n ON n.id = o.id AND n.date <> o.date
+            JOIN specification s ON s.document_id = o.id
+            UNION ALL
+            SELECT n.date, s.name, 1, s.amount
+            FROM old_rows o
+            JOIN new_rows n ON n.id = o.id AND n.date <> o.date
+            JOIN specification s ON s.document_id = n.id
+        ) c
+        GROUP BY day, name
+        ON CONFLICT (day, name) DO UPDATE
+            SET specification_count = r.specification_count + EXCLUDED.specification_count,
+                total_amount = r.total_amount + EXCLUDED.total_amount;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+-- specifications removed by ON DELETE CASCADE no longer see their document, so they are subtracted here
+CREATE FUNCTION report_document_deleting() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount)
+    SELECT OLD.date, name, -COUNT(*), -SUM(amount)
+    FROM specification
+    WHERE document_id = OLD.id
+    GROUP BY name
+    ON CONFLICT (day, name) DO UPDATE
+        SET specification_count = r.specification_count + EXCLUDED.specification_count,
+            total_amount = r.total_amount + EXCLUDED.total_amount;
+    RETURN OLD;
+END;
+$$;
+
+CREATE FUNCTION report_specification_changed() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount)
+        SELECT d.date, n.name, COUNT(*), SUM(n.amount)
+        FROM new_rows n
+        JOIN document d ON d.id = n.document_id
+        GROUP BY d.date, n.name
+        ON CONFLICT (day, name) DO UPDATE
+            SET specification_count = r.specification_count + EXCLUDED.specification_count,
+                total_amount = r.total_amount + EXCLUDED.total_amount;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount)
+        SELECT d.date, o.name, -COUNT(*), -SUM(o.amount)
+        FROM old_rows o
+        JOIN document d ON d.id = o.document_id
+        GROUP BY d.date, o.name
+        ON CONFLICT (day, name) DO UPDATE
+            SET specification_count = r.specification_count + EXCLUDED.specification_count,
+                total_amount = r.total_amount + EXCLUDED.total_amount;
+    ELSE
+        INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount)
+        SELECT day, name, SUM(cnt), SUM(amt)
+        FROM (
+            SELECT d.date AS day, o.name, -1 AS cnt, -o.amount AS amt
+            FROM old_rows o
+            JOIN new_rows n ON n.id = o.id
+            JOIN document d ON d.id = o.document_id
+            WHERE n.name <> o.name OR n.amount <> o.amount OR n.document_id <> o.document_id
+            UNION ALL
+            SELECT d.date, n.name, 1, n.amount
+            FROM old_rows o
+            JOIN new_rows n ON n.id = o.id
+            JOIN document d ON d.id = n.document_id
+            WHERE n.name <> o.name OR n.amount <> o.amount OR n.document_id <> o.document_id
+        ) c
+        GROUP BY day, name
+        ON CONFLICT (day, name) DO UPDATE
+            SET specification_count = r.specification_count + EXCLUDED.specification_count,
+                total_amount = r.total_amount + EXCLUDED.total_amount;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER report_document_inserted AFTER INSERT ON document
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_document_changed();
+
+CREATE TRIGGER report_document_updated AFTER UPDATE ON document
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_document_changed();
+
+CREATE TRIGGER report_document_deleted AFTER DELETE ON document
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_document_changed();
+
+CREATE TRIGGER report_document_deleting BEFORE DELETE ON document
+    FOR EACH ROW EXECUTE FUNCTION report_document_deleting();
+
+CREATE TRIGGER report_specification_inserted AFTER INSERT ON specification
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_specification_changed();
+
+CREATE TRIGGER report_specification_updated AFTER UPDATE ON specification
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_specification_changed();
+
+CREATE TRIGGER report_specification_deleted AFTER DELETE ON specification
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_specification_changed();
+
+
+--rollback DROP TRIGGER report_specification_deleted ON specification;
+--rollback DROP TRIGGER report_specification_updated ON specification;
+--rollback DROP TRIGGER report_specification_inserted ON specification;
+--rollback DROP TRIGGER report_document_deleting ON document;
+--rollback DROP TRIGGER report_document_deleted ON document;
+--rollback DROP TRIGGER report_document_updated ON document;
+--rollback DROP TRIGGER report_document_inserted ON document;
+--rollback DROP FUNCTION report_specification_changed();
+--rollback DROP FUNCTION report_document_deleting();
+--rollback DROP FUNCTION report_document_changed();
@@ -0,0 +1,19 @@
+--liquibase formatted sql
+
+--changeset idempotency:8 author:mshchenyev
+--comment: Ключи идемпотентности для повторных запросов на создание документа
+
+CREATE TABLE idempotency_key (
+                                 key VARCHAR(255) PRIMARY KEY,
+                                 request_hash VARCHAR(64) NOT NULL,
+                                 document_id BIGINT,
+                                 version BIGINT,
+                                 response BYTEA,
+                                 created_at TIMESTAMP NOT NULL DEFAULT now(),
+                                 expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_idempotency_key_expires_at ON idempotency_key (expires_at);
+
+
+--rollback DROP TABLE idempotency_key;
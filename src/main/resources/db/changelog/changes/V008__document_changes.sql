@@ -0,0 +1,64 @@
+--liquibase formatted sql
+
+--changeset changes:9 author:mshchenyev
+--comment: Журнал изменений документов (transactional outbox) для инкрементальной синхронизации
+
+CREATE TABLE document_change (
+                                 id BIGSERIAL PRIMARY KEY,
+                                 xid BIGINT NOT NULL,
+                                 document_id BIGINT NOT NULL,
+                                 operation VARCHAR(10) NOT NULL,
+                                 version BIGINT NOT NULL,
+                                 changed_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_document_change_xid_id ON document_change (xid, id);
+CREATE INDEX idx_document_change_changed_at ON document_change (changed_at);
+
+
+--rollback DROP TABLE document_change;
+
+--changeset changes:10 author:mshchenyev splitStatements:false
+--comment: События пишутся триггером в той же транзакции, что и изменение документа
+
+CREATE FUNCTION document_change_capture() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO document_change (xid, document_id, operation, version)
+        SELECT pg_current_xact_id()::text::bigint, id, 'CREATE', version
+        FROM new_rows
+        ORDER BY id;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO document_change (xid, document_id, operation, version)
+        SELECT pg_current_xact_id()::text::bigint, id, 'DELETE', version
+        FROM old_rows
+        ORDER BY id;
+    ELSE
+        INSERT INTO document_change (xid, document_id, operation, version)
+        SELECT pg_current_xact_id()::text::bigint, n.id, 'UPDATE', n.version
+        FROM new_rows n
+        JOIN old_rows o ON o.id = n.id
+        WHERE n IS DISTINCT FROM o
+        ORDER BY n.id;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER document_change_inserted AFTER INSERT ON document
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION document_change_capture();
+
+CREATE TRIGGER document_change_updated AFTER UPDATE ON document
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION document_change_capture();
+
+CREATE TRIGGER document_change_deleted AFTER DELETE ON document
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION document_change_capture();
+
+
+--rollback DROP TRIGGER document_change_deleted ON document;
+--rollback DROP TRIGGER document_change_updated ON document;
+--rollback DROP TRIGGER document_change_inserted ON document;
+--rollback DROP FUNCTION document_change_capture();
@@ -0,0 +1,129 @@
+--liquibase formatted sql
+
+--changeset archive:11 author:mshchenyev
+--comment: Архив документов и спецификаций, секционированный по месяцам даты документа
+
+CREATE TABLE document_archive (
+                                  id BIGINT NOT NULL,
+                                  number VARCHAR(50) NOT NULL,
+                                  date DATE NOT NULL,
+                                  amount NUMERIC(19,2) NOT NULL,
+                                  note TEXT,
+                                  version BIGINT NOT NULL,
+                                  archived_at TIMESTAMP NOT NULL DEFAULT now(),
+                                  PRIMARY KEY (id, date)
+) PARTITION BY RANGE (date);
+
+CREATE TABLE specification_archive (
+                                       id BIGINT NOT NULL,
+                                       document_id BIGINT NOT NULL,
+                                       document_date DATE NOT NULL,
+                                       name VARCHAR(255) NOT NULL,
+                                       amount NUMERIC(19,2) NOT NULL,
+                                       PRIMARY KEY (id, document_date)
+) PARTITION BY RANGE (document_date);
+
+-- rows only land here if a monthly partition was not created in time
+CREATE TABLE document_archive_default PARTITION OF document_archive DEFAULT;
+CREATE TABLE specification_archive_default PARTITION OF specification_archive DEFAULT;
+
+CREATE INDEX idx_document_archive_date_id ON document_archive (date DESC, id DESC);
+CREATE INDEX idx_specification_archive_document ON specification_archive (document_id, id);
+
+-- narrow unpartitioned directory: keeps archived numbers taken and points lookups by id or number at one partition
+CREATE TABLE archived_document (
+                                   id BIGINT PRIMARY KEY,
+                                   number VARCHAR(50) NOT NULL UNIQUE,
+                                   date DATE NOT NULL
+);
+
+
+--rollback DROP TABLE archived_document;
+--rollback DROP TABLE specification_archive;
+--rollback DROP TABLE document_archive;
+
+--changeset archive:12 author:mshchenyev splitStatements:false
+--comment: Номера архивных документов остаются занятыми; перенос в архив не меняет отчёты и публикуется в журнал как ARCHIVE
+
+CREATE FUNCTION archiving_in_progress() RETURNS boolean LANGUAGE sql STABLE AS $$
+    SELECT coalesce(current_setting('app.archiving', true), '') = 'on'
+$$;
+
+CREATE FUNCTION document_number_reserved() RETURNS trigger LANGUAGE plpgsql AS $$
+DECLARE
+    taken VARCHAR(50);
+BEGIN
+    SELECT n.number INTO taken
+    FROM new_rows n
+    JOIN archived_document a ON a.number = n.number
+    LIMIT 1;
+    IF taken IS NOT NULL THEN
+        RAISE EXCEPTION 'duplicate key value violates unique constraint "document_number_key"'
+            USING ERRCODE = 'unique_violation',
+                  CONSTRAINT = 'document_number_key',
+                  DETAIL = format('Key (number)=(%s) belongs to an archived document.', taken);
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER document_number_reserved_inserted AFTER INSERT ON document
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION document_number_reserved();
+
+CREATE TRIGGER document_number_reserved_updated AFTER UPDATE ON document
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION document_number_reserved();
+
+DROP TRIGGER report_document_deleted ON document;
+DROP TRIGGER report_document_deleting ON document;
+DROP TRIGGER report_specification_deleted ON specification;
+
+CREATE TRIGGER report_document_deleted AFTER DELETE ON document
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT WHEN (NOT archiving_in_progress()) EXECUTE FUNCTION report_document_changed();
+
+CREATE TRIGGER report_document_deleting BEFORE DELETE ON document
+    FOR EACH ROW WHEN (NOT archiving_in_progress()) EXECUTE FUNCTION report_document_deleting();
+
+CREATE TRIGGER report_specification_deleted AFTER DELETE ON specification
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT WHEN (NOT archiving_in_progress()) EXECUTE FUNCTION report_specification_changed();
+
+CREATE OR REPLACE FUNCTION document_change_capture() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO document_change (xid, document_id, operation, version)
+        SELECT pg_current_xact_id()::text::bigint, id, 'CREATE', version
+        FROM new_rows
+        ORDER BY id;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO document_change (xid, document_id, operation, version)
+        SELECT pg_current_xact_id()::text::bigint, id,
+               CASE WHEN archiving_in_progress() THEN 'ARCHIVE' ELSE 'DELETE' END, version
+        FROM old_rows
+        ORDER BY id;
+    ELSE
+        INSERT INTO document_change (xid, document_id, operation, version)
+        SELECT pg_current_xact_id()::text::bigint, n.id, 'UPDATE', n.version
+        FROM new_rows n
+        JOIN old_rows o ON o.id = n.id
+        WHERE n IS DISTINCT FROM o
+        ORDER BY n.id;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+
+--rollback DROP TRIGGER report_specification_deleted ON specification;
+--rollback DROP TRIGGER report_document_deleting ON document;
+--rollback DROP TRIGGER report_document_deleted ON document;
+--rollback CREATE TRIGGER report_document_deleted AFTER DELETE ON document REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION report_document_changed();
+--rollback CREATE TRIGGER report_document_deleting BEFORE DELETE ON document FOR EACH ROW EXECUTE FUNCTION report_document_deleting();
+--rollback CREATE TRIGGER report_specification_deleted AFTER DELETE ON specification REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION report_specification_changed();
+--rollback DROP TRIGGER document_number_reserved_updated ON document;
+--rollback DROP TRIGGER document_number_reserved_inserted ON document;
+--rollback DROP FUNCTION document_number_reserved();
+--rollback CREATE OR REPLACE FUNCTION document_change_capture() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN IF TG_OP = 'INSERT' THEN INSERT INTO document_change (xid, document_id, operation, version) SELECT pg_current_xact_id()::text::bigint, id, 'CREATE', version FROM new_rows ORDER BY id; ELSIF TG_OP = 'DELETE' THEN INSERT INTO document_change (xid, document_id, operation, version) SELECT pg_current_xact_id()::text::bigint, id, 'DELETE', version FROM old_rows ORDER BY id; ELSE INSERT INTO document_change (xid, document_id, operation, version) SELECT pg_current_xact_id()::text::bigint, n.id, 'UPDATE', n.version FROM new_rows n JOIN old_rows o ON o.id = n.id WHERE n IS DISTINCT FROM o ORDER BY n.id; END IF; RETURN NULL; END; $$;
+--rollback DROP FUNCTION archiving_in_progress();
@@ -0,0 +1,125 @@
+--liquibase formatted sql
+
+--changeset reports:13 author:mshchenyev
+--comment: Журналы приращений сводных таблиц: триггеры только добавляют строки, итоги сворачивает фоновая задача
+
+CREATE TABLE report_daily_delta (
+                                    day DATE NOT NULL,
+                                    document_count BIGINT NOT NULL,
+                                    total_amount NUMERIC(19,2) NOT NULL
+);
+
+CREATE TABLE report_specification_delta (
+                                            day DATE NOT NULL,
+                                            name VARCHAR(255) NOT NULL,
+                                            specification_count BIGINT NOT NULL,
+                                            total_amount NUMERIC(19,2) NOT NULL
+);
+
+CREATE INDEX idx_report_daily_delta_day ON report_daily_delta (day);
+CREATE INDEX idx_report_specification_delta_day ON report_specification_delta (day);
+
+
+--rollback DROP TABLE report_specification_delta;
+--rollback DROP TABLE report_daily_delta;
+
+--changeset reports:14 author:mshchenyev splitStatements:false
+--comment: Триггеры сводных таблиц пишут приращения вместо обновления итогов на месте
+
+-- plain appends take no row locks, so concurrent writers of the same day neither wait for nor deadlock with each other
+CREATE OR REPLACE FUNCTION report_document_changed() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO report_daily_delta (day, document_count, total_amount)
+        SELECT date, COUNT(*), SUM(amount)
+        FROM new_rows
+        GROUP BY date;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO report_daily_delta (day, document_count, total_amount)
+        SELECT date, -COUNT(*), -SUM(amount)
+        FROM old_rows
+        GROUP BY date;
+    ELSE
+        INSERT INTO report_daily_delta (day, document_count, total_amount)
+        SELECT day, SUM(cnt), SUM(amt)
+        FROM (
+            SELECT o.date AS day, -1 AS cnt, -o.amount AS amt
+            FROM old_rows o JOIN new_rows n ON n.id = o.id
+            WHERE n.date <> o.date OR n.amount <> o.amount
+            UNION ALL
+            SELECT n.date, 1, n.amount
+            FROM old_rows o JOIN new_rows n ON n.id = o.id
+            WHERE n.date <> o.date OR n.amount <> o.amount
+        ) c
+        GROUP BY day;
+
+        INSERT INTO report_specification_delta (day, name, specification_count, total_amount)
+        SELECT day, name, SUM(cnt), SUM(amt)
+        FROM (
+            SELECT o.date AS day, s.name, -1 AS cnt, -s.amount AS amt
+            FROM old_rows o
+            JOIN new_rows n ON n.id = o.id AND n.date <> o.date
+            JOIN specification s ON s.document_id = o.id
+            UNION ALL
+            SELECT n.date, s.name, 1, s.amount
+            FROM old_rows o
+            JOIN new_rows n ON n.id = o.id AND n.date <> o.date
+            JOIN specification s ON s.document_id = n.id
+        ) c
+        GROUP BY day, name;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION report_document_deleting() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    INSERT INTO report_specification_delta (day, name, specification_count, total_amount)
+    SELECT OLD.date, name, -COUNT(*), -SUM(amount)
+    FROM specification
+    WHERE document_id = OLD.id
+    GROUP BY name;
+    RETURN OLD;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION report_specification_changed() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO report_specification_delta (day, name, specification_count, total_amount)
+        SELECT d.date, n.name, COUNT(*), SUM(n.amount)
+        FROM new_rows n
+        JOIN document d ON d.id = n.document_id
+        GROUP BY d.date, n.name;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO report_specification_delta (day, name, specification_count, total_amount)
+        SELECT d.date, o.name, -COUNT(*), -SUM(o.amount)
+        FROM old_rows o
+        JOIN document d ON d.id = o.document_id
+        GROUP BY d.date, o.name;
+    ELSE
+        INSERT INTO report_specification_delta (day, name, specification_count, total_amount)
+        SELECT day, name, SUM(cnt), SUM(amt)
+        FROM (
+            SELECT d.date AS day, o.name, -1 AS cnt, -o.amount AS amt
+            FROM old_rows o
+            JOIN new_rows n ON n.id = o.id
+            JOIN document d ON d.id = o.document_id
+            WHERE n.name <> o.name OR n.amount <> o.amount OR n.document_id <> o.document_id
+            UNION ALL
+            SELECT d.date, n.name, 1, n.amount
+            FROM old_rows o
+            JOIN new_rows n ON n.id = o.id
+            JOIN document d ON d.id = n.document_id
+            WHERE n.name <> o.name OR n.amount <> o.amount OR n.document_id <> o.document_id
+        ) c
+        GROUP BY day, name;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+
+--rollback CREATE OR REPLACE FUNCTION report_document_changed() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN IF TG_OP = 'INSERT' THEN INSERT INTO report_daily_summary AS r (day, document_count, total_amount) SELECT date, COUNT(*), SUM(amount) FROM new_rows GROUP BY date ON CONFLICT (day) DO UPDATE SET document_count = r.document_count + EXCLUDED.document_count, total_amount = r.total_amount + EXCLUDED.total_amount; ELSIF TG_OP = 'DELETE' THEN INSERT INTO report_daily_summary AS r (day, document_count, total_amount) SELECT date, -COUNT(*), -SUM(amount) FROM old_rows GROUP BY date ON CONFLICT (day) DO UPDATE SET document_count = r.document_count + EXCLUDED.document_count, total_amount = r.total_amount + EXCLUDED.total_amount; ELSE INSERT INTO report_daily_summary AS r (day, document_count, total_amount) SELECT day, SUM(cnt), SUM(amt) FROM (SELECT o.date AS day, -1 AS cnt, -o.amount AS amt FROM old_rows o JOIN new_rows n ON n.id = o.id WHERE n.date <> o.date OR n.amount <> o.amount UNION ALL SELECT n.date, 1, n.amount FROM old_rows o JOIN new_rows n ON n.id = o.id WHERE n.date <> o.date OR n.amount <> o.amount) c GROUP BY day ON CONFLICT (day) DO UPDATE SET document_count = r.document_count + EXCLUDED.document_count, total_amount = r.total_amount + EXCLUDED.total_amount; INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount) SELECT day, name, SUM(cnt), SUM(amt) FROM (SELECT o.date AS day, s.name, -1 AS cnt, -s.amount AS amt FROM old_rows o JOIN new_rows n ON n.id = o.id AND n.date <> o.date JOIN specification s ON s.document_id = o.id UNION ALL SELECT n.date, s.name, 1, s.amount FROM old_rows o JOIN new_rows n ON n.id = o.id AND n.date <> o.date JOIN specification s ON s.document_id = n.id) c GROUP BY day, name ON CONFLICT (day, name) DO UPDATE SET specification_count = r.specification_count + EXCLUDED.specification_count, total_amount = r.total_amount + EXCLUDED.total_amount; END IF; RETURN NULL; END; $$;
+--rollback CREATE OR REPLACE FUNCTION report_document_deleting() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount) SELECT OLD.date, name, -COUNT(*), -SUM(amount) FROM specification WHERE document_id = OLD.id GROUP BY name ON CONFLICT (day, name) DO UPDATE SET specification_count = r.specification_count + EXCLUDED.specification_count, total_amount = r.total_amount + EXCLUDED.total_amount; RETURN OLD; END; $$;
+--rollback CREATE OR REPLACE FUNCTION report_specification_changed() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN IF TG_OP = 'INSERT' THEN INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount) SELECT d.date, n.name, COUNT(*), SUM(n.amount) FROM new_rows n JOIN document d ON d.id = n.document_id GROUP BY d.date, n.name ON CONFLICT (day, name) DO UPDATE SET specification_count = r.specification_count + EXCLUDED.specification_count, total_amount = r.total_amount + EXCLUDED.total_amount; ELSIF TG_OP = 'DELETE' THEN INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount) SELECT d.date, o.name, -COUNT(*), -SUM(o.amount) FROM old_rows o JOIN document d ON d.id = o.document_id GROUP BY d.date, o.name ON CONFLICT (day, name) DO UPDATE SET specification_count = r.specification_count + EXCLUDED.specification_count, total_amount = r.total_amount + EXCLUDED.total_amount; ELSE INSERT INTO report_specification_summary AS r (day, name, specification_count, total_amount) SELECT day, name, SUM(cnt), SUM(amt) FROM (SELECT d.date AS day, o.name, -1 AS cnt, -o.amount AS amt FROM old_rows o JOIN new_rows n ON n.id = o.id JOIN document d ON d.id = o.document_id WHERE n.name <> o.name OR n.amount <> o.amount OR n.document_id <> o.document_id UNION ALL SELECT d.date, n.name, 1, n.amount FROM old_rows o JOIN new_rows n ON n.id = o.id JOIN document d ON d.id = n.document_id WHERE n.name <> o.name OR n.amount <> o.amount OR n.document_id <> o.document_id) c GROUP BY day, name ON CONFLICT (day, name) DO UPDATE SET specification_count = r.specification_count + EXCLUDED.specification_count, total_amount = r.total_amount + EXCLUDED.total_amount; END IF; RETURN NULL; END; $$;
@@ -0,0 +1,19 @@
+--liquibase formatted sql
+
+--changeset changes:15 author:mshchenyev
+--comment: Граница очистки журнала изменений: курсор устарел, только если после него удалялись события
+
+CREATE TABLE document_change_watermark (
+                                           singleton BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (singleton),
+                                           xid BIGINT NOT NULL,
+                                           id BIGINT NOT NULL
+);
+
+-- events may already have been purged: everything before the oldest retained event counts as purged
+INSERT INTO document_change_watermark (xid, id)
+SELECT xid, id - 1 FROM (SELECT xid, id FROM document_change ORDER BY xid, id LIMIT 1) oldest
+UNION ALL
+SELECT 0, 0 WHERE NOT EXISTS (SELECT 1 FROM document_change);
+
+
+--rollback DROP TABLE document_change_watermark;
@@ -0,0 +1,62 @@
+package ru.docapp.documentapp;
+
+import org.junit.jupiter.api.Test;
+import ru.docapp.documentapp.config.AdaptiveLimit;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveLimitTest {
+
+    @Test
+    void shouldRejectOverLimitAndAdmitAgainAfterRelease() {
+        var limit = new AdaptiveLimit("read", 2, 1, 10, 2.0);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+        assertThat(limit.getRejected()).isEqualTo(1);
+
+        limit.release(TimeUnit.MILLISECONDS.toNanos(5));
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldGrowWhileLatencyHoldsAndShrinkWhenItDegrades() {
+        var limit = new AdaptiveLimit("write", 10, 2, 50, 2.0);
+
+        saturate(limit, 100, TimeUnit.MILLISECONDS.toNanos(10));
+        int grown = limit.getLimit();
+        assertThat(grown).isGreaterThan(10);
+
+        saturate(limit, 5, TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(limit.getLimit()).isLessThan(grown / 2);
+        assertThat(limit.getLimit()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void shouldNotGrowWhenBudgetIsNotTheBottleneck() {
+        var limit = new AdaptiveLimit("read", 20, 4, 200, 2.0);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+            limit.release(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(20);
+    }
+
+    private static void saturate(AdaptiveLimit limit, int windows, long rttNanos) {
+        for (int w = 0; w < windows; w++) {
+            int acquired = 0;
+            while (limit.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limit.release(rttNanos);
+            }
+        }
+    }
+}
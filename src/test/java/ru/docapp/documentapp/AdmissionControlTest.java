@@ -0,0 +1,70 @@
+package ru.docapp.documentapp;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import ru.docapp.documentapp.config.AdmissionControl;
+import ru.docapp.documentapp.config.AdmissionProperties;
+import ru.docapp.documentapp.exceptions.ServiceOverloadedException;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionControlTest {
+
+    @Test
+    void shouldShedOnlyTheEndpointThatUsedUpItsBudget() throws Exception {
+        var admission = new AdmissionControl(bind(Map.of(
+                "app.admission.read.initial-limit", "1",
+                "app.admission.read.min-limit", "1",
+                "app.admission.endpoints.document.search.initial-limit", "2",
+                "app.admission.endpoints.document.search.min-limit", "1")));
+        HandlerMethod search = handler("search");
+        HandlerMethod getById = handler("getById");
+
+        assertThat(admission.preHandle(get(), new MockHttpServletResponse(), search)).isTrue();
+        assertThat(admission.preHandle(get(), new MockHttpServletResponse(), search)).isTrue();
+        assertThatThrownBy(() -> admission.preHandle(get(), new MockHttpServletResponse(), search))
+                .isInstanceOf(ServiceOverloadedException.class)
+                .hasMessageContaining("document.search:read");
+
+        // a saturated search leaves GET /{id} and writes of the same handler alone
+        assertThat(admission.preHandle(get(), new MockHttpServletResponse(), getById)).isTrue();
+        assertThat(admission.preHandle(new MockHttpServletRequest("POST", "/api/documents"),
+                new MockHttpServletResponse(), search)).isTrue();
+    }
+
+    @Test
+    void shouldBindEndpointBudgetsByHandlerMethodName() {
+        AdmissionProperties properties = bind(Map.of("app.admission.endpoints.document.getAll.max-limit", "7"));
+
+        assertThat(properties.budget("document", "getAll", true).maxLimit()).isEqualTo(7);
+        assertThat(properties.budget("document", "getById", true)).isEqualTo(properties.read());
+        assertThat(properties.budget("specification", "update", false)).isEqualTo(properties.write());
+    }
+
+    private static AdmissionProperties bind(Map<String, String> values) {
+        return new Binder(new MapConfigurationPropertySource(values))
+                .bindOrCreate("app.admission", AdmissionProperties.class);
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/api/documents");
+    }
+
+    private static HandlerMethod handler(String method) throws NoSuchMethodException {
+        return new HandlerMethod(new DocumentController(), DocumentController.class.getMethod(method));
+    }
+
+    public static class DocumentController {
+
+        public void search() {}
+
+        public void getById() {}
+    }
+}
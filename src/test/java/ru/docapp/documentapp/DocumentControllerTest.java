@@ -1,26 +1,58 @@
 package ru.docapp.documentapp;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.json.JsonCompareMode;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.CannotCreateTransactionException;
 import ru.docapp.documentapp.controllers.DocumentController;
+import ru.docapp.documentapp.dto.BatchItemResult;
+import ru.docapp.documentapp.dto.CachedDocument;
+import ru.docapp.documentapp.dto.ChangeOperation;
+import ru.docapp.documentapp.dto.DocumentChangeDto;
+import ru.docapp.documentapp.dto.DocumentChangePage;
 import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.DocumentFilter;
+import ru.docapp.documentapp.dto.DocumentFormat;
+import ru.docapp.documentapp.dto.DocumentPage;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+import ru.docapp.documentapp.dto.DocumentSearchHit;
+import ru.docapp.documentapp.dto.DocumentView;
+import ru.docapp.documentapp.dto.IdempotentResult;
+import ru.docapp.documentapp.dto.ImportResult;
 import ru.docapp.documentapp.dto.SpecificationDto;
-import ru.docapp.documentapp.entities.Document;
-import ru.docapp.documentapp.entities.Specification;
+import ru.docapp.documentapp.dto.SpecificationResponseDto;
+import ru.docapp.documentapp.exceptions.BatchTooLargeException;
+import ru.docapp.documentapp.exceptions.ChangeCursorExpiredException;
 import ru.docapp.documentapp.exceptions.DocumentNotFoundException;
+import ru.docapp.documentapp.exceptions.DocumentVersionMismatchException;
+import ru.docapp.documentapp.exceptions.InvalidCursorException;
+import ru.docapp.documentapp.services.ChangeFeedService;
+import ru.docapp.documentapp.services.DocumentBatchService;
+import ru.docapp.documentapp.services.DocumentExportService;
+import ru.docapp.documentapp.services.DocumentGroupCommit;
+import ru.docapp.documentapp.services.DocumentImportService;
 import ru.docapp.documentapp.services.DocumentService;
+import ru.docapp.documentapp.services.IdempotencyService;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -38,11 +70,29 @@ class DocumentControllerTest {
     @MockBean
     private DocumentService documentService;
 
+    @MockBean
+    private DocumentExportService documentExportService;
+
+    @MockBean
+    private DocumentBatchService documentBatchService;
+
+    @MockBean
+    private DocumentImportService documentImportService;
+
+    @MockBean
+    private DocumentGroupCommit documentGroupCommit;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private ChangeFeedService changeFeedService;
+
     private DocumentDto validDto;
-    private Document document;
+    private CachedDocument document;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         validDto = new DocumentDto(
                 null,
                 "DOC-001",
@@ -52,20 +102,10 @@ class DocumentControllerTest {
                 List.of(new SpecificationDto(null, "Item", BigDecimal.valueOf(100.50)))
         );
 
-        document = Document.builder()
-                .id(1L)
-                .number("DOC-001")
-                .date(LocalDate.of(2025, 11, 25))
-                .amount(BigDecimal.valueOf(100.50))
-                .note("Test")
-                .specifications(List.of(
-                        Specification.builder()
-                                .id(1L)
-                                .name("Item")
-                                .amount(BigDecimal.valueOf(100.50))
-                                .build()
-                ))
-                .build();
+        var response = new DocumentResponseDto(1L, "DOC-001", LocalDate.of(2025, 11, 25),
+                BigDecimal.valueOf(100.50), "Test",
+                List.of(new SpecificationResponseDto(1L, "Item", BigDecimal.valueOf(100.50))));
+        document = new CachedDocument(response, 0L, objectMapper.writeValueAsBytes(response));
     }
 
     // ================= CREATE =================
@@ -85,11 +125,129 @@ class DocumentControllerTest {
         verify(documentService).createDocument(any(DocumentDto.class));
     }
 
+    @Test
+    void shouldCreateThroughGroupCommitWhenEnabled() throws Exception {
+        when(documentGroupCommit.isEnabled()).thenReturn(true);
+        when(documentGroupCommit.createDocument(any())).thenReturn(document);
+
+        mockMvc.perform(post("/api/documents")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validDto)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(1));
+
+        verify(documentService, never()).createDocument(any());
+    }
+
+    @Test
+    void shouldReplayCreateWithSameIdempotencyKey() throws Exception {
+        when(idempotencyService.createDocument(eq("key-1"), any())).thenReturn(new IdempotentResult(document, true));
+
+        mockMvc.perform(post("/api/documents")
+                        .header(DocumentController.IDEMPOTENCY_KEY_HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validDto)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(DocumentController.IDEMPOTENT_REPLAYED_HEADER, "true"))
+                .andExpect(header().string("ETag", "W/\"0\""))
+                .andExpect(jsonPath("$.id").value(1));
+
+        verify(documentService, never()).createDocument(any());
+    }
+
+    @Test
+    void shouldReturnChangesWithNextCursor() throws Exception {
+        when(changeFeedService.getChanges("abc", 100, DocumentView.FULL)).thenReturn(new DocumentChangePage(
+                List.of(new DocumentChangeDto("def", 7L, ChangeOperation.DELETE, 2, LocalDateTime.now(), null)),
+                "def", false));
+
+        mockMvc.perform(get("/api/documents/changes").param("since", "abc"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(DocumentController.NEXT_CURSOR_HEADER, "def"))
+                .andExpect(jsonPath("$.changes[0].documentId").value(7))
+                .andExpect(jsonPath("$.changes[0].operation").value("DELETE"))
+                .andExpect(jsonPath("$.hasMore").value(false));
+    }
+
+    @Test
+    void shouldReturnGoneForExpiredChangeCursor() throws Exception {
+        when(changeFeedService.getChanges(eq("old"), anyInt(), any()))
+                .thenThrow(new ChangeCursorExpiredException("expired"));
+
+        mockMvc.perform(get("/api/documents/changes").param("since", "old"))
+                .andExpect(status().isGone())
+                .andExpect(jsonPath("$.code").value("CHANGE_CURSOR_EXPIRED"));
+    }
+
+    @Test
+    void shouldShedReadsOverBudgetWithRetryAfterButAdmitWrites() throws Exception {
+        List<MvcResult> shed = new ArrayList<>();
+        List<Integer> writeStatuses = new ArrayList<>();
+        when(documentService.getDocumentResponse(1L)).thenAnswer(invocation -> {
+            // every nested read holds its permit until the innermost one is turned away
+            if (shed.isEmpty()) {
+                MvcResult nested = mockMvc.perform(get("/api/documents/1")).andReturn();
+                if (nested.getResponse().getStatus() == 503) {
+                    shed.add(nested);
+                    writeStatuses.add(mockMvc.perform(delete("/api/documents/1")).andReturn().getResponse().getStatus());
+                }
+            }
+            return document;
+        });
+
+        mockMvc.perform(get("/api/documents/1"))
+                .andExpect(status().isOk());
+
+        assertThat(shed).hasSize(1);
+        assertThat(shed.get(0).getResponse().getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(shed.get(0).getResponse().getContentAsString()).contains("\"code\":\"OVERLOADED\"");
+        assertThat(writeStatuses).containsExactly(204);
+    }
+
+    @Test
+    void shouldReturnServiceUnavailableWhenNoConnectionIsAvailable() throws Exception {
+        when(documentService.getDocumentResponse(1L))
+                .thenThrow(new CannotCreateTransactionException("Could not open JPA EntityManager for transaction"));
+
+        mockMvc.perform(get("/api/documents/1"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.code").value("DATABASE_UNAVAILABLE"));
+    }
+
+    @Test
+    void shouldCreateBatchWithPerItemResults() throws Exception {
+        when(documentBatchService.createDocuments(anyList())).thenReturn(List.of(
+                BatchItemResult.created(0, "DOC-001", 1L),
+                BatchItemResult.duplicate(1, "DOC-001")
+        ));
+
+        mockMvc.perform(post("/api/documents/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(validDto, validDto))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].status").value("DUPLICATE"));
+    }
+
+    @Test
+    void shouldReturn400WhenBatchTooLarge() throws Exception {
+        when(documentBatchService.createDocuments(anyList()))
+                .thenThrow(new BatchTooLargeException("Batch size 2 exceeds limit 1"));
+
+        mockMvc.perform(post("/api/documents/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(validDto, validDto))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("BATCH_TOO_LARGE"));
+    }
+
     // ================= UPDATE =================
 
     @Test
     void shouldUpdateDocumentSuccessfully() throws Exception {
-        when(documentService.updateDocument(eq(1L), any())).thenReturn(document);
+        when(documentService.updateDocument(eq(1L), any(), isNull())).thenReturn(document);
 
         mockMvc.perform(put("/api/documents/1")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -98,7 +256,20 @@ class DocumentControllerTest {
                 .andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.number").value("DOC-001"));
 
-        verify(documentService).updateDocument(eq(1L), any(DocumentDto.class));
+        verify(documentService).updateDocument(eq(1L), any(DocumentDto.class), isNull());
+    }
+
+    @Test
+    void shouldReturn412OnStaleIfMatch() throws Exception {
+        when(documentService.updateDocument(eq(1L), any(), eq(3L)))
+                .thenThrow(new DocumentVersionMismatchException("Document 1 has version 4, expected 3"));
+
+        mockMvc.perform(put("/api/documents/1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validDto)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.code").value("PRECONDITION_FAILED"));
     }
 
     // ================= DELETE =================
@@ -128,28 +299,126 @@ class DocumentControllerTest {
 
     @Test
     void shouldGetAllDocuments() throws Exception {
-        when(documentService.getAllDocuments()).thenReturn(Arrays.asList(document));
+        var item = new DocumentResponseDto(1L, "DOC-001", LocalDate.of(2025, 11, 25),
+                BigDecimal.valueOf(100.50), "Test", List.of());
+        when(documentService.getDocumentsPage(any(), isNull(), eq(50), eq(DocumentView.FULL)))
+                .thenReturn(new DocumentPage(Arrays.asList(item), "next"));
 
         mockMvc.perform(get("/api/documents"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "next"))
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$.length()").value(1))
                 .andExpect(jsonPath("$[0].number").value("DOC-001"));
     }
 
+    @Test
+    void shouldWriteDocumentsPageLikeObjectMapper() throws Exception {
+        var item = new DocumentResponseDto(1L, "DOC-001", LocalDate.of(2025, 11, 25), new BigDecimal("100.50"), null,
+                List.of(new SpecificationResponseDto(2L, "Стулья \"Венские\"", new BigDecimal("100.50"))));
+        var summary = new DocumentResponseDto(3L, "DOC-002", LocalDate.of(2025, 11, 24), BigDecimal.ZERO, "", null);
+        when(documentService.getDocumentsPage(any(), isNull(), eq(50), eq(DocumentView.FULL)))
+                .thenReturn(new DocumentPage(List.of(item, summary), null));
+
+        mockMvc.perform(get("/api/documents"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json(objectMapper.writeValueAsString(List.of(item, summary)), JsonCompareMode.STRICT));
+    }
+
+    @Test
+    void shouldNegotiateCborForDocumentsPageAndDetail() throws Exception {
+        var item = new DocumentResponseDto(1L, "DOC-001", LocalDate.of(2025, 11, 25), new BigDecimal("100.50"), "Test",
+                List.of(new SpecificationResponseDto(2L, "Стулья", new BigDecimal("100.50"))));
+        when(documentService.getDocumentsPage(any(), isNull(), eq(50), eq(DocumentView.FULL)))
+                .thenReturn(new DocumentPage(List.of(item), null));
+        when(documentService.getDocumentResponse(1L))
+                .thenReturn(new CachedDocument(item, 3L, objectMapper.writeValueAsBytes(item)));
+        var cborMapper = CBORMapper.builder().findAndAddModules().build();
+
+        byte[] page = mockMvc.perform(get("/api/documents").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(cborMapper.readValue(page, DocumentResponseDto[].class)).containsExactly(item);
+
+        byte[] detail = mockMvc.perform(get("/api/documents/1").accept("application/cbor;q=0.9, application/json;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().string("ETag", "W/\"3\""))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(cborMapper.readValue(detail, DocumentResponseDto.class)).isEqualTo(item);
+    }
+
+    @Test
+    void shouldPassListingFiltersToService() throws Exception {
+        when(documentService.getDocumentsPage(any(), eq("abc"), eq(10), eq(DocumentView.SUMMARY)))
+                .thenReturn(new DocumentPage(List.of(), null));
+
+        mockMvc.perform(get("/api/documents")
+                        .param("dateFrom", "2025-01-01")
+                        .param("numberPrefix", "DOC-")
+                        .param("cursor", "abc")
+                        .param("limit", "10")
+                        .param("fields", "SUMMARY"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        verify(documentService).getDocumentsPage(
+                eq(new DocumentFilter(LocalDate.of(2025, 1, 1), null, "DOC-", null, null)), eq("abc"), eq(10), eq(DocumentView.SUMMARY));
+    }
+
+    @Test
+    void shouldReturn400OnInvalidCursor() throws Exception {
+        when(documentService.getDocumentsPage(any(), eq("bad"), anyInt(), any()))
+                .thenThrow(new InvalidCursorException("Invalid cursor: bad"));
+
+        mockMvc.perform(get("/api/documents").param("cursor", "bad"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("INVALID_CURSOR"));
+    }
+
+    @Test
+    void shouldSearchDocuments() throws Exception {
+        var hit = new DocumentSearchHit(1L, "DOC-001", LocalDate.of(2025, 11, 25),
+                BigDecimal.TEN, "Поставка мебели", 0.6, List.of("Стулья"));
+        when(documentService.searchDocuments("мебель", 1, 5)).thenReturn(List.of(hit));
+
+        mockMvc.perform(get("/api/documents/search").param("q", "мебель").param("page", "1").param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].number").value("DOC-001"))
+                .andExpect(jsonPath("$[0].matchedSpecifications[0]").value("Стулья"));
+    }
+
     @Test
     void shouldGetDocumentById() throws Exception {
-        when(documentService.getDocumentWithSpecifications(eq(1L))).thenReturn(document);
+        var response = new DocumentResponseDto(1L, "DOC-001", LocalDate.of(2025, 11, 25),
+                BigDecimal.valueOf(100.50), "Test", List.of());
+        when(documentService.getDocumentResponse(eq(1L)))
+                .thenReturn(new CachedDocument(response, 2L, objectMapper.writeValueAsBytes(response)));
 
         mockMvc.perform(get("/api/documents/1"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"2\""))
                 .andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.number").value("DOC-001"));
     }
 
+    @Test
+    void shouldReturn304WhenETagMatches() throws Exception {
+        when(documentService.getDocumentVersion(eq(1L))).thenReturn(2L);
+
+        mockMvc.perform(get("/api/documents/1").header("If-None-Match", "\"2\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(documentService, never()).getDocumentResponse(any());
+    }
+
     @Test
     void shouldReturn404WhenDocumentNotFound() throws Exception {
-        when(documentService.getDocumentWithSpecifications(eq(999L)))
+        when(documentService.getDocumentResponse(eq(999L)))
                 .thenThrow(new DocumentNotFoundException("Document not found: 999"));
 
         mockMvc.perform(get("/api/documents/999"))
@@ -158,6 +427,51 @@ class DocumentControllerTest {
                 .andExpect(jsonPath("$.message").value("Document not found: 999"));
     }
 
+    // ================= EXPORT =================
+
+    @Test
+    void shouldStreamCsvExport() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(3);
+            out.write("document_id\n1\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(documentExportService).export(eq(LocalDate.of(2025, 1, 1)), isNull(), eq(DocumentFormat.CSV), any());
+
+        MvcResult result = mockMvc.perform(get("/api/documents/export")
+                        .param("format", "CSV")
+                        .param("dateFrom", "2025-01-01"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"documents.csv\""))
+                .andExpect(content().string("document_id\n1\n"));
+    }
+
+    @Test
+    void shouldReturn400OnUnknownExportFormat() throws Exception {
+        mockMvc.perform(get("/api/documents/export").param("format", "XML"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("VALIDATION_ERROR"));
+    }
+
+    // ================= IMPORT =================
+
+    @Test
+    void shouldImportCsvBody() throws Exception {
+        when(documentImportService.importDocuments(eq(DocumentFormat.CSV), any()))
+                .thenReturn(new ImportResult(2, 0, 0, 1, 2, 0));
+
+        mockMvc.perform(post("/api/documents/import")
+                        .contentType("text/csv")
+                        .content("number,date,note,specification_name,specification_amount\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.documentsCreated").value(1))
+                .andExpect(jsonPath("$.specificationsCreated").value(2));
+    }
+
     // ================= VALIDATION =================
 
     @Test
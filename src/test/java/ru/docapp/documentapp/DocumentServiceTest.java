@@ -1,24 +1,84 @@
 package ru.docapp.documentapp;
 
+import ru.docapp.documentapp.config.AdmissionProperties;
+import ru.docapp.documentapp.config.GroupCommitProperties;
+import ru.docapp.documentapp.dto.AmountMismatch;
+import ru.docapp.documentapp.dto.ArchiveResult;
+import ru.docapp.documentapp.dto.BatchItemResult;
+import ru.docapp.documentapp.dto.BatchItemStatus;
+import ru.docapp.documentapp.dto.CachedDocument;
+import ru.docapp.documentapp.dto.ChangeOperation;
+import ru.docapp.documentapp.dto.DocumentChangeDto;
+import ru.docapp.documentapp.dto.DocumentChangePage;
 import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.DocumentFilter;
+import ru.docapp.documentapp.dto.DocumentFormat;
+import ru.docapp.documentapp.dto.DocumentPage;
+import ru.docapp.documentapp.dto.DocumentResponseDto;
+import ru.docapp.documentapp.dto.DocumentView;
+import ru.docapp.documentapp.dto.DocumentSearchHit;
+import ru.docapp.documentapp.dto.IdempotentResult;
+import ru.docapp.documentapp.dto.ImportResult;
+import ru.docapp.documentapp.dto.NumberIndexStatsDto;
+import ru.docapp.documentapp.dto.ReconciliationResult;
+import ru.docapp.documentapp.dto.ReportGranularity;
+import ru.docapp.documentapp.dto.ReportTotalDto;
 import ru.docapp.documentapp.dto.SpecificationDto;
+import ru.docapp.documentapp.dto.SpecificationNameTotalDto;
+import ru.docapp.documentapp.dto.SpecificationPatchDto;
+import ru.docapp.documentapp.dto.SpecificationResponseDto;
+import ru.docapp.documentapp.exceptions.ChangeCursorExpiredException;
+import ru.docapp.documentapp.exceptions.DocumentNotFoundException;
+import ru.docapp.documentapp.exceptions.DocumentVersionMismatchException;
 import ru.docapp.documentapp.exceptions.DuplicateDocumentNumberException;
+import ru.docapp.documentapp.exceptions.DuplicateSpecificationNameException;
+import ru.docapp.documentapp.exceptions.IdempotencyKeyReusedException;
+import ru.docapp.documentapp.exceptions.ServiceOverloadedException;
 import ru.docapp.documentapp.entities.Document;
 import ru.docapp.documentapp.repositories.DocumentRepository;
+import ru.docapp.documentapp.services.AmountReconciliationService;
+import ru.docapp.documentapp.services.ChangeFeedService;
+import ru.docapp.documentapp.services.DocumentArchiveService;
+import ru.docapp.documentapp.services.DocumentBatchService;
+import ru.docapp.documentapp.services.DocumentCache;
+import ru.docapp.documentapp.services.DocumentExportService;
+import ru.docapp.documentapp.services.DocumentGroupCommit;
+import ru.docapp.documentapp.services.DocumentImportService;
+import ru.docapp.documentapp.services.DocumentMetrics;
+import ru.docapp.documentapp.services.DocumentNumberIndex;
 import ru.docapp.documentapp.services.DocumentService;
 import ru.docapp.documentapp.services.DuplicateLogService;
+import ru.docapp.documentapp.services.IdempotencyService;
+import ru.docapp.documentapp.services.ReportService;
+import ru.docapp.documentapp.services.SpecificationService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @SpringBootTest
 class  DocumentServiceTest{
@@ -29,12 +89,59 @@ private DocumentService documentService;
 @Autowired
 private DocumentRepository documentRepository;
 
+@Autowired
+private DocumentExportService documentExportService;
+
+@Autowired
+private DocumentBatchService documentBatchService;
+
+@Autowired
+private DocumentImportService documentImportService;
+
+@Autowired
+private SpecificationService specificationService;
+
+@Autowired
+private ReportService reportService;
+
+@Autowired
+private DocumentNumberIndex documentNumberIndex;
+
+@Autowired
+private IdempotencyService idempotencyService;
+
+@Autowired
+private ChangeFeedService changeFeedService;
+
+@Autowired
+private DocumentArchiveService documentArchiveService;
+
+@Autowired
+private AmountReconciliationService amountReconciliationService;
+
+@Autowired
+private DocumentCache documentCache;
+
+@Autowired
+private DocumentMetrics documentMetrics;
+
+@Autowired
+private AdmissionProperties admissionProperties;
+
+@Autowired
+private NamedParameterJdbcTemplate jdbcTemplate;
+
+@Autowired
+private MeterRegistry meterRegistry;
+
 @MockBean
 private DuplicateLogService duplicateLogService;
 
 @BeforeEach
 void clean() {
     documentRepository.deleteAll();
+    jdbcTemplate.update("TRUNCATE specification_archive, document_archive, archived_document, report_daily_summary, "
+            + "report_specification_summary, report_daily_delta, report_specification_delta", Map.of());
 }
 
 @Test
@@ -51,12 +158,12 @@ void shouldCreateDocumentWithSpecifications() {
             )
     );
 
-    Document saved = documentService.createDocument(dto);
+    DocumentResponseDto saved = documentService.createDocument(dto).document();
 
-    assertThat(saved.getId()).isNotNull();
-    assertThat(saved.getNumber()).isEqualTo("DOC-001");
-    assertThat(saved.getAmount()).isEqualByComparingTo(BigDecimal.valueOf(300.50));
-    assertThat(saved.getSpecifications()).hasSize(2);
+    assertThat(saved.id()).isNotNull();
+    assertThat(saved.number()).isEqualTo("DOC-001");
+    assertThat(saved.amount()).isEqualByComparingTo(BigDecimal.valueOf(300.50));
+    assertThat(saved.specifications()).hasSize(2);
 }
 
 @Test
@@ -69,5 +176,597 @@ void shouldRejectDuplicateDocumentNumber() {
     assertThatThrownBy(() -> documentService.createDocument(dto2))
             .isInstanceOf(DuplicateDocumentNumberException.class)
             .hasMessageContaining("already exists");
+    assertThat(meterRegistry.get(DocumentMetrics.DUPLICATES).tag("operation", "create").counter().count())
+            .isGreaterThanOrEqualTo(1);
+    assertThat(meterRegistry.get("document.service")
+            .tags("method", "createDocument", "exception", "DuplicateDocumentNumberException").timer().count())
+            .isGreaterThanOrEqualTo(1);
+}
+
+@Test
+void shouldRejectDuplicateThroughNumberIndexBeforeInsert() {
+    documentService.createDocument(new DocumentDto(null, "IDX-1", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "X", BigDecimal.ONE))));
+    NumberIndexStatsDto before = documentNumberIndex.rebuild();
+    assertThat(before.ready()).isTrue();
+    assertThat(before.entries()).isEqualTo(1);
+
+    assertThatThrownBy(() -> documentService.createDocument(new DocumentDto(null, "IDX-1", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "Y", BigDecimal.TEN)))))
+            .isInstanceOf(DuplicateDocumentNumberException.class);
+    documentService.createDocument(new DocumentDto(null, "IDX-2", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "Z", BigDecimal.ONE))));
+
+    NumberIndexStatsDto after = documentNumberIndex.stats();
+    assertThat(after.duplicates()).isEqualTo(before.duplicates() + 1);
+    assertThat(after.absent() + after.falsePositives())
+            .isEqualTo(before.absent() + before.falsePositives() + 1);
+    assertThat(after.entries()).isEqualTo(2);
+    assertThat(meterRegistry.get("documents.number.index.lookups").tag("result", "duplicate").functionCounter().count())
+            .isGreaterThanOrEqualTo(1);
+}
+
+@Test
+void shouldGroupConcurrentCreatesIntoOneCommitWithPerRequestResults() throws Exception {
+    documentService.createDocument(new DocumentDto(null, "GC-0", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "X", BigDecimal.ONE))));
+    var groupCommit = new DocumentGroupCommit(documentService, documentMetrics,
+            new GroupCommitProperties(true, 50, Duration.ofMillis(500), Duration.ofSeconds(30)), admissionProperties);
+    groupCommit.start();
+    ExecutorService callers = Executors.newFixedThreadPool(4);
+    try {
+        List<Future<CachedDocument>> results = new ArrayList<>();
+        for (String number : List.of("GC-1", "GC-2", "GC-1", "GC-0")) {
+            results.add(callers.submit(() -> groupCommit.createDocument(new DocumentDto(null, number, LocalDate.now(),
+                    null, "", List.of(new SpecificationDto(null, "A", BigDecimal.TEN))))));
+        }
+        List<Object> outcomes = new ArrayList<>();
+        for (Future<CachedDocument> result : results) {
+            try {
+                outcomes.add(result.get(10, TimeUnit.SECONDS).document().number());
+            } catch (ExecutionException e) {
+                outcomes.add(e.getCause().getClass());
+            }
+        }
+        assertThat(outcomes).containsExactlyInAnyOrder("GC-1", "GC-2",
+                DuplicateDocumentNumberException.class, DuplicateDocumentNumberException.class);
+        assertThat(meterRegistry.get(DocumentMetrics.GROUP_COMMIT_SIZE).tag("result", "committed").summary().max())
+                .isEqualTo(4);
+
+        // repeated specification names fail the group insert, so the group falls back to one commit per request
+        Future<CachedDocument> broken = callers.submit(() -> groupCommit.createDocument(new DocumentDto(null, "GC-3",
+                LocalDate.now(), null, "", List.of(new SpecificationDto(null, "A", BigDecimal.ONE),
+                new SpecificationDto(null, "A", BigDecimal.ONE)))));
+        Future<CachedDocument> valid = callers.submit(() -> groupCommit.createDocument(new DocumentDto(null, "GC-4",
+                LocalDate.now(), null, "", List.of(new SpecificationDto(null, "A", BigDecimal.ONE)))));
+        assertThat(valid.get(10, TimeUnit.SECONDS).document().specifications()).hasSize(1);
+        assertThatThrownBy(() -> broken.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DuplicateDocumentNumberException.class);
+        assertThat(meterRegistry.get(DocumentMetrics.GROUP_COMMIT_SIZE).tag("result", "fallback").summary().count())
+                .isEqualTo(1);
+    } finally {
+        callers.shutdownNow();
+        groupCommit.stop();
+    }
+    assertThat(documentRepository.count()).isEqualTo(4);
+}
+
+@Test
+void shouldAnswerGroupCommitTimeoutWithConfiguredRetryAfter() throws Exception {
+    var admission = new AdmissionProperties(true, Duration.ofSeconds(7), 2.0,
+            admissionProperties.read(), admissionProperties.write(), Map.of());
+    // the writer holds the request while it waits for a fuller group, longer than the caller waits
+    var groupCommit = new DocumentGroupCommit(documentService, documentMetrics,
+            new GroupCommitProperties(true, 50, Duration.ofSeconds(1), Duration.ofMillis(100)), admission);
+    groupCommit.start();
+    try {
+        assertThatThrownBy(() -> groupCommit.createDocument(new DocumentDto(null, "GC-LATE", LocalDate.now(), null, "",
+                List.of(new SpecificationDto(null, "A", BigDecimal.ONE)))))
+                .isInstanceOfSatisfying(ServiceOverloadedException.class,
+                        e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(7)));
+    } finally {
+        groupCommit.stop();
+    }
+    // the outcome was unknown to the caller: the writer still committed it
+    assertThat(documentRepository.findByNumber("GC-LATE")).isPresent();
+}
+
+@Test
+void shouldReplayCreateForRepeatedIdempotencyKey() {
+    String key = "create-" + System.nanoTime();
+    var dto = new DocumentDto(null, "IDEM-1", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "X", BigDecimal.ONE)));
+
+    IdempotentResult first = idempotencyService.createDocument(key, dto);
+    IdempotentResult retry = idempotencyService.createDocument(key, dto);
+
+    assertThat(first.replayed()).isFalse();
+    assertThat(retry.replayed()).isTrue();
+    assertThat(retry.document().document()).isEqualTo(first.document().document());
+    assertThat(retry.document().json()).isEqualTo(first.document().json());
+    assertThat(documentRepository.count()).isEqualTo(1);
+    verifyNoInteractions(duplicateLogService);
+
+    var changed = new DocumentDto(null, "IDEM-2", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "X", BigDecimal.ONE)));
+    assertThatThrownBy(() -> idempotencyService.createDocument(key, changed))
+            .isInstanceOf(IdempotencyKeyReusedException.class);
+}
+
+@Test
+void shouldPageDocumentsByDateAndIdWithSpecifications() {
+    for (int i = 1; i <= 3; i++) {
+        documentService.createDocument(new DocumentDto(null, "PAGE-" + i, LocalDate.of(2025, 1, i), null, "",
+                List.of(new SpecificationDto(null, "Item " + i, BigDecimal.valueOf(i)))));
+    }
+    var filter = new DocumentFilter(null, null, "PAGE-", null, null);
+
+    DocumentPage first = documentService.getDocumentsPage(filter, null, 2, DocumentView.FULL);
+
+    assertThat(first.items()).extracting(DocumentResponseDto::number).containsExactly("PAGE-3", "PAGE-2");
+    assertThat(first.items().get(0).specifications()).hasSize(1);
+    assertThat(first.nextCursor()).isNotNull();
+
+    DocumentPage second = documentService.getDocumentsPage(filter, first.nextCursor(), 2, DocumentView.SUMMARY);
+
+    assertThat(second.items()).extracting(DocumentResponseDto::number).containsExactly("PAGE-1");
+    assertThat(second.items().get(0).specifications()).isNull();
+    assertThat(second.nextCursor()).isNull();
+}
+
+@Test
+void shouldExportDocumentsAsNdjson() throws Exception {
+    documentService.createDocument(new DocumentDto(null, "EXP-1", LocalDate.of(2025, 2, 1), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE), new SpecificationDto(null, "B", BigDecimal.TEN))));
+    documentService.createDocument(new DocumentDto(null, "EXP-2", LocalDate.of(2025, 3, 1), null, "",
+            List.of(new SpecificationDto(null, "C", BigDecimal.ONE))));
+
+    var out = new ByteArrayOutputStream();
+    documentExportService.export(LocalDate.of(2025, 3, 1), null, DocumentFormat.NDJSON, out);
+
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+    assertThat(lines).hasSize(1);
+    assertThat(lines[0]).contains("\"number\":\"EXP-2\"").contains("\"name\":\"C\"");
+}
+
+@Test
+void shouldCreateBatchReportingDuplicatesAndInvalidItems() {
+    documentService.createDocument(new DocumentDto(null, "BATCH-EXISTING", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "X", BigDecimal.ONE))));
+
+    List<BatchItemResult> results = documentBatchService.createDocuments(List.of(
+            new DocumentDto(null, "BATCH-1", LocalDate.now(), null, "",
+                    List.of(new SpecificationDto(null, "A", BigDecimal.ONE), new SpecificationDto(null, "B", BigDecimal.TEN))),
+            new DocumentDto(null, "BATCH-EXISTING", LocalDate.now(), null, "",
+                    List.of(new SpecificationDto(null, "A", BigDecimal.ONE))),
+            new DocumentDto(null, "BATCH-1", LocalDate.now(), null, "",
+                    List.of(new SpecificationDto(null, "A", BigDecimal.ONE))),
+            new DocumentDto(null, "", LocalDate.now(), null, "", List.of())
+    ));
+
+    assertThat(results).extracting(BatchItemResult::status).containsExactly(
+            BatchItemStatus.CREATED, BatchItemStatus.DUPLICATE, BatchItemStatus.DUPLICATE, BatchItemStatus.INVALID);
+
+    DocumentResponseDto created = documentService.getDocumentResponse(results.get(0).id()).document();
+    assertThat(created.amount()).isEqualByComparingTo(BigDecimal.valueOf(11));
+    assertThat(created.specifications()).hasSize(2);
+}
+
+@Test
+void shouldImportCsvSkippingDuplicatesAndInvalidRows() throws Exception {
+    documentService.createDocument(new DocumentDto(null, "IMP-EXISTING", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "X", BigDecimal.ONE))));
+    String csv = """
+            number,date,note,specification_name,specification_amount
+            IMP-1,2025-05-01,"note, with comma",A,1.50
+            IMP-1,2025-05-01,"note, with comma",B,2.00
+            IMP-EXISTING,2025-05-01,,A,1.00
+            IMP-2,2025-05-02,,A,-1
+            IMP-3,2025-05-03,,A,2.00
+            IMP-3,2025-05-03,,B,0
+            """;
+
+    ImportResult result = documentImportService.importDocuments(
+            DocumentFormat.CSV, new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(result.rowsRead()).isEqualTo(6);
+    assertThat(result.rowsRejected()).isEqualTo(2);
+    // IMP-2 lost its only row, IMP-3 keeps a valid one
+    assertThat(result.documentsRejected()).isEqualTo(1);
+    assertThat(result.documentsCreated()).isEqualTo(2);
+    assertThat(result.specificationsCreated()).isEqualTo(3);
+    assertThat(result.duplicates()).isEqualTo(1);
+
+    assertThat(documentRepository.findByNumber("IMP-2")).isEmpty();
+
+    Document imported = documentRepository.findByNumber("IMP-1").orElseThrow();
+    assertThat(imported.getAmount()).isEqualByComparingTo("3.50");
+    assertThat(imported.getNote()).isEqualTo("note, with comma");
+}
+
+@Test
+void shouldServeCachedDocumentUntilUpdated() {
+    CachedDocument saved = documentService.createDocument(new DocumentDto(null, "CACHE-1", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))));
+
+    CachedDocument first = documentService.getDocumentResponse(saved.document().id());
+    assertThat(documentService.getDocumentResponse(saved.document().id())).isSameAs(first);
+    assertThat(documentService.getDocumentResponseByNumber("CACHE-1")).isSameAs(first);
+
+    documentService.updateDocument(saved.document().id(), new DocumentDto(null, "CACHE-2", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "B", BigDecimal.TEN))), null);
+
+    CachedDocument updated = documentService.getDocumentResponse(saved.document().id());
+    assertThat(updated.document().number()).isEqualTo("CACHE-2");
+    assertThat(updated.document().amount()).isEqualByComparingTo(BigDecimal.TEN);
+    assertThatThrownBy(() -> documentService.getDocumentResponseByNumber("CACHE-1"))
+            .isInstanceOf(DocumentNotFoundException.class);
+}
+
+@Test
+void shouldServeCacheHitsWithoutTakingAConnection() {
+    CachedDocument saved = documentService.createDocument(new DocumentDto(null, "CACHE-3", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))));
+    CachedDocument cached = documentService.getDocumentResponse(saved.document().id());
+
+    long acquired = meterRegistry.get("hikaricp.connections.acquire").timer().count();
+    for (int i = 0; i < 5; i++) {
+        assertThat(documentService.getDocumentResponse(saved.document().id())).isSameAs(cached);
+        assertThat(documentService.getDocumentResponseByNumber("CACHE-3")).isSameAs(cached);
+        assertThat(documentService.getDocumentVersion(saved.document().id())).isEqualTo(cached.version());
+    }
+    assertThat(meterRegistry.get("hikaricp.connections.acquire").timer().count()).isEqualTo(acquired);
+}
+
+@Test
+void shouldRejectRenameToTakenNumberBeforeUpdating() {
+    documentService.createDocument(new DocumentDto(null, "REN-1", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))));
+    CachedDocument saved = documentService.createDocument(new DocumentDto(null, "REN-2", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))));
+    Long id = saved.document().id();
+
+    assertThatThrownBy(() -> documentService.updateDocument(id, new DocumentDto(null, "REN-1", saved.document().date(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))), null))
+            .isInstanceOf(DuplicateDocumentNumberException.class);
+    assertThat(documentService.getDocumentVersion(id)).isEqualTo(saved.version());
+
+    // keeping its own number is not a duplicate, with or without the document cached
+    CachedDocument updated = documentService.updateDocument(id, new DocumentDto(null, "REN-2", saved.document().date(), null, "note",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))), null);
+    assertThat(updated.document().note()).isEqualTo("note");
+    documentService.getDocumentResponse(id);
+    assertThat(documentService.updateDocument(id, new DocumentDto(null, "REN-2", saved.document().date(), null, "again",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))), null).document().note()).isEqualTo("again");
+}
+
+@Test
+void shouldNotCountOwnNumberAsFalsePositiveWhenUpdatingUncachedDocument() {
+    CachedDocument saved = documentService.createDocument(new DocumentDto(null, "IDX-OWN", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))));
+    NumberIndexStatsDto before = documentNumberIndex.rebuild();
+    assertThat(documentCache.getIfPresent(saved.document().id())).isNull();
+
+    documentService.updateDocument(saved.document().id(), new DocumentDto(null, "IDX-OWN", saved.document().date(), null, "note",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))), null);
+
+    NumberIndexStatsDto after = documentNumberIndex.stats();
+    assertThat(after.falsePositives()).isEqualTo(before.falsePositives());
+    assertThat(after.duplicates()).isEqualTo(before.duplicates());
+}
+
+@Test
+void shouldBumpVersionOnUpdateAndRejectStaleVersion() {
+    CachedDocument saved = documentService.createDocument(new DocumentDto(null, "VER-1", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))));
+    long version = saved.version();
+    Long specId = saved.document().specifications().get(0).id();
+
+    CachedDocument updated = documentService.updateDocument(saved.document().id(), new DocumentDto(null, "VER-1", saved.document().date(), null, "",
+            List.of(new SpecificationDto(specId, "Renamed", BigDecimal.ONE))), version);
+
+    assertThat(updated.version()).isGreaterThan(version);
+    assertThat(documentService.getDocumentVersion(saved.document().id())).isEqualTo(updated.version());
+    assertThatThrownBy(() -> documentService.updateDocument(saved.document().id(), new DocumentDto(null, "VER-1", saved.document().date(), null, "",
+            List.of(new SpecificationDto(specId, "Again", BigDecimal.ONE))), version))
+            .isInstanceOf(DocumentVersionMismatchException.class);
+}
+
+@Test
+void shouldMaintainDocumentAmountByDeltaOnSpecificationChanges() {
+    CachedDocument saved = documentService.createDocument(new DocumentDto(null, "SPEC-1", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.valueOf(10)))));
+
+    var added = specificationService.addSpecification(saved.document().id(), new SpecificationDto(null, "B", BigDecimal.valueOf(5)), null);
+    assertThat(added.documentAmount()).isEqualByComparingTo("15");
+
+    var patched = specificationService.updateSpecification(saved.document().id(), added.specification().id(),
+            new SpecificationPatchDto(null, BigDecimal.valueOf(7.5)), added.documentVersion());
+    assertThat(patched.specification().name()).isEqualTo("B");
+    assertThat(patched.documentAmount()).isEqualByComparingTo("17.5");
+
+    var deleted = specificationService.deleteSpecification(saved.document().id(), saved.document().specifications().get(0).id(), null);
+    assertThat(deleted.documentAmount()).isEqualByComparingTo("7.5");
+
+    assertThatThrownBy(() -> specificationService.addSpecification(saved.document().id(), new SpecificationDto(null, "B", BigDecimal.ONE), null))
+            .isInstanceOf(DuplicateSpecificationNameException.class);
+    assertThat(documentService.getDocumentResponse(saved.document().id()).document().amount()).isEqualByComparingTo("7.5");
+}
+
+@Test
+void shouldReplaceSpecificationWithSameNameOnFullUpdate() {
+    CachedDocument saved = documentService.createDocument(new DocumentDto(null, "SPEC-2", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))));
+
+    CachedDocument updated = documentService.updateDocument(saved.document().id(), new DocumentDto(null, "SPEC-2", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.TEN))), null);
+
+    assertThat(updated.document().specifications()).hasSize(1);
+    assertThat(updated.document().amount()).isEqualByComparingTo(BigDecimal.TEN);
+}
+
+@Test
+void shouldSearchByNoteSpecificationNameAndNumberFragment() {
+    documentService.createDocument(new DocumentDto(null, "INV-2025-0042", LocalDate.now(), null, "Поставка офисной мебели",
+            List.of(new SpecificationDto(null, "Стулья офисные", BigDecimal.ONE))));
+    documentService.createDocument(new DocumentDto(null, "ACT-7", LocalDate.now(), null, "Акт сверки",
+            List.of(new SpecificationDto(null, "Бумага", BigDecimal.ONE))));
+
+    assertThat(documentService.searchDocuments("мебель", 0, 20))
+            .extracting(DocumentSearchHit::number).containsExactly("INV-2025-0042");
+    var bySpec = documentService.searchDocuments("стул", 0, 20);
+    assertThat(bySpec).extracting(DocumentSearchHit::number).containsExactly("INV-2025-0042");
+    assertThat(bySpec.get(0).matchedSpecifications()).containsExactly("Стулья офисные");
+    assertThat(documentService.searchDocuments("0042", 0, 20))
+            .extracting(DocumentSearchHit::number).containsExactly("INV-2025-0042");
+    assertThat(documentService.searchDocuments("  ", 0, 20)).isEmpty();
+}
+
+@Test
+void shouldMaintainReportSummariesAcrossWritePaths() {
+    CachedDocument first = documentService.createDocument(new DocumentDto(null, "REP-1", LocalDate.of(2001, 1, 10), null, "",
+            List.of(new SpecificationDto(null, "X", BigDecimal.TEN), new SpecificationDto(null, "Y", BigDecimal.valueOf(5)))));
+    documentBatchService.createDocuments(List.of(
+            new DocumentDto(null, "REP-2", LocalDate.of(2001, 1, 20), null, "", List.of(new SpecificationDto(null, "X", BigDecimal.ONE))),
+            new DocumentDto(null, "REP-3", LocalDate.of(2001, 2, 3), null, "", List.of(new SpecificationDto(null, "Z", BigDecimal.valueOf(2))))));
+    Document second = documentRepository.findByNumber("REP-2").orElseThrow();
+    Document third = documentRepository.findByNumber("REP-3").orElseThrow();
+
+    documentService.updateDocument(third.getId(), new DocumentDto(null, "REP-3", LocalDate.of(2001, 1, 25), null, "",
+            List.of(new SpecificationDto(null, "Z", BigDecimal.valueOf(2)))), null);
+    specificationService.addSpecification(second.getId(), new SpecificationDto(null, "Y", BigDecimal.valueOf(3)), null);
+    documentService.deleteDocument(first.document().id());
+
+    LocalDate from = LocalDate.of(2001, 1, 1);
+    LocalDate to = LocalDate.of(2001, 12, 31);
+    Runnable verify = () -> {
+        assertThat(reportService.getTotals(from, to, ReportGranularity.MONTH))
+                .containsExactly(new ReportTotalDto(LocalDate.of(2001, 1, 1), 2, new BigDecimal("6.00")));
+        assertThat(reportService.getTotals(from, to, ReportGranularity.DAY))
+                .extracting(ReportTotalDto::period)
+                .containsExactly(LocalDate.of(2001, 1, 20), LocalDate.of(2001, 1, 25));
+        assertThat(reportService.getTopSpecifications(from, to, 10))
+                .extracting(SpecificationNameTotalDto::name)
+                .containsExactly("Y", "Z", "X");
+    };
+
+    verify.run();
+    reportService.foldDeltas();
+    verify.run();
+    assertThat(reportService.rebuild(from, to).dailyBuckets()).isEqualTo(2);
+    verify.run();
+}
+
+@Test
+void shouldKeepReportTotalsExactUnderConcurrentSameDayWrites() throws Exception {
+    LocalDate day = LocalDate.of(2002, 6, 1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < 10; i++) {
+                    CachedDocument created = documentService.createDocument(new DocumentDto(null, "DL-" + thread + "-" + i, day, null, "",
+                            List.of(new SpecificationDto(null, "A", BigDecimal.ONE), new SpecificationDto(null, "B", BigDecimal.TEN))));
+                    specificationService.addSpecification(created.document().id(), new SpecificationDto(null, "C", BigDecimal.ONE), null);
+                    if (i % 2 == 0) {
+                        documentService.deleteDocument(created.document().id());
+                    }
+                }
+                return null;
+            }));
+            if (t == 4) {
+                reportService.foldDeltas();
+            }
+        }
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+    } finally {
+        executor.shutdownNow();
+    }
+
+    List<ReportTotalDto> expected = List.of(new ReportTotalDto(day, 40, new BigDecimal("480.00")));
+    assertThat(reportService.getTotals(day, day, ReportGranularity.DAY)).isEqualTo(expected);
+    reportService.foldDeltas();
+    assertThat(reportService.getTotals(day, day, ReportGranularity.DAY)).isEqualTo(expected);
+    assertThat(reportService.getTopSpecifications(day, day, 10))
+            .extracting(SpecificationNameTotalDto::name, SpecificationNameTotalDto::specificationCount)
+            .containsExactly(tuple("B", 40L), tuple("A", 40L), tuple("C", 40L));
+}
+
+@Test
+void shouldCorrectDriftOnceWhenRebuildsOverlap() throws Exception {
+    LocalDate day = LocalDate.of(2003, 7, 1);
+    for (int i = 0; i < 3; i++) {
+        documentService.createDocument(new DocumentDto(null, "RB-" + i, day, null, "",
+                List.of(new SpecificationDto(null, "A", BigDecimal.TEN))));
+    }
+    jdbcTemplate.update("INSERT INTO report_daily_delta (day, document_count, total_amount) VALUES (:day, 5, 100)",
+            Map.of("day", day));
+    jdbcTemplate.update("INSERT INTO report_specification_delta (day, name, specification_count, total_amount) "
+            + "VALUES (:day, 'A', -2, -20)", Map.of("day", day));
+
+    int rebuilds = 6;
+    ExecutorService executor = Executors.newFixedThreadPool(rebuilds);
+    try {
+        CyclicBarrier start = new CyclicBarrier(rebuilds);
+        List<Future<?>> running = new ArrayList<>();
+        for (int t = 0; t < rebuilds; t++) {
+            int width = t % 3;
+            running.add(executor.submit(() -> {
+                start.await();
+                return reportService.rebuild(day.minusDays(width), day.plusDays(width));
+            }));
+        }
+        for (Future<?> rebuild : running) {
+            rebuild.get(60, TimeUnit.SECONDS);
+        }
+    } finally {
+        executor.shutdownNow();
+    }
+    reportService.foldDeltas();
+
+    assertThat(reportService.getTotals(day, day, ReportGranularity.DAY))
+            .containsExactly(new ReportTotalDto(day, 3, new BigDecimal("30.00")));
+    assertThat(reportService.getTopSpecifications(day, day, 10))
+            .extracting(SpecificationNameTotalDto::name, SpecificationNameTotalDto::specificationCount)
+            .containsExactly(tuple("A", 3L));
+}
+
+@Test
+void shouldFeedChangesInCommitOrderAfterCursor() {
+    DocumentChangePage tail = changeFeedService.getChanges(null, DocumentService.MAX_PAGE_SIZE, DocumentView.SUMMARY);
+    while (tail.hasMore()) {
+        tail = changeFeedService.getChanges(tail.nextCursor(), DocumentService.MAX_PAGE_SIZE, DocumentView.SUMMARY);
+    }
+
+    CachedDocument first = documentService.createDocument(new DocumentDto(null, "CHG-1", LocalDate.of(2002, 1, 1), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))));
+    CachedDocument second = documentService.createDocument(new DocumentDto(null, "CHG-2", LocalDate.of(2002, 1, 2), null, "", List.of()));
+    specificationService.addSpecification(first.document().id(), new SpecificationDto(null, "B", BigDecimal.TEN), null);
+    documentService.deleteDocument(second.document().id());
+
+    DocumentChangePage firstPage = changeFeedService.getChanges(tail.nextCursor(), 2, DocumentView.FULL);
+    assertThat(firstPage.hasMore()).isTrue();
+    DocumentChangePage secondPage = changeFeedService.getChanges(firstPage.nextCursor(), 10, DocumentView.FULL);
+    assertThat(secondPage.hasMore()).isFalse();
+
+    List<DocumentChangeDto> changes = new ArrayList<>(firstPage.changes());
+    changes.addAll(secondPage.changes());
+    assertThat(changes).extracting(DocumentChangeDto::documentId, DocumentChangeDto::operation).containsExactly(
+            tuple(first.document().id(), ChangeOperation.CREATE),
+            tuple(second.document().id(), ChangeOperation.CREATE),
+            tuple(first.document().id(), ChangeOperation.UPDATE),
+            tuple(second.document().id(), ChangeOperation.DELETE));
+    assertThat(changes.get(0).document().specifications()).hasSize(2);
+    assertThat(changes.get(0).document().amount()).isEqualByComparingTo("11");
+    assertThat(changes.get(3).document()).isNull();
+    assertThat(changeFeedService.getChanges(secondPage.nextCursor(), 10, DocumentView.FULL).changes()).isEmpty();
+}
+
+@Test
+void shouldExpireOnlyCursorsThatMissedPurgedChanges() {
+    DocumentChangePage tail = changeFeedService.getChanges(null, DocumentService.MAX_PAGE_SIZE, DocumentView.SUMMARY);
+    while (tail.hasMore()) {
+        tail = changeFeedService.getChanges(tail.nextCursor(), DocumentService.MAX_PAGE_SIZE, DocumentView.SUMMARY);
+    }
+    documentService.createDocument(new DocumentDto(null, "PRG-1", LocalDate.of(2002, 2, 1), null, "", List.of()));
+    documentService.createDocument(new DocumentDto(null, "PRG-2", LocalDate.of(2002, 2, 2), null, "", List.of()));
+    DocumentChangePage read = changeFeedService.getChanges(tail.nextCursor(), 10, DocumentView.SUMMARY);
+    assertThat(read.changes()).hasSize(2);
+    String behind = read.changes().get(0).cursor();
+    String caughtUp = read.nextCursor();
+
+    jdbcTemplate.update("UPDATE document_change SET changed_at = now() - interval '30 days'", Map.of());
+    changeFeedService.purgeExpired();
+
+    assertThat(changeFeedService.getChanges(caughtUp, 10, DocumentView.SUMMARY).changes()).isEmpty();
+    assertThatThrownBy(() -> changeFeedService.getChanges(behind, 10, DocumentView.SUMMARY))
+            .isInstanceOf(ChangeCursorExpiredException.class);
+    CachedDocument later = documentService.createDocument(new DocumentDto(null, "PRG-3", LocalDate.of(2002, 2, 3), null, "", List.of()));
+    assertThat(changeFeedService.getChanges(caughtUp, 10, DocumentView.SUMMARY).changes())
+            .extracting(DocumentChangeDto::documentId)
+            .containsExactly(later.document().id());
+}
+
+@Test
+void shouldArchiveOldDocumentsKeepingThemReadableAndTheirNumbersTaken() {
+    LocalDate from = LocalDate.of(1990, 1, 1);
+    LocalDate to = LocalDate.of(1990, 12, 31);
+    List<ReportTotalDto> totalsBefore = reportService.getTotals(from, to, ReportGranularity.MONTH);
+
+    CachedDocument january = documentService.createDocument(new DocumentDto(null, "ARC-1", LocalDate.of(1990, 1, 15), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE), new SpecificationDto(null, "B", BigDecimal.TEN))));
+    CachedDocument february = documentService.createDocument(new DocumentDto(null, "ARC-2", LocalDate.of(1990, 2, 3), null, "",
+            List.of(new SpecificationDto(null, "C", BigDecimal.valueOf(5)))));
+    documentService.createDocument(new DocumentDto(null, "ARC-3", LocalDate.of(1990, 3, 1), null, "",
+            List.of(new SpecificationDto(null, "D", BigDecimal.ONE))));
+    List<ReportTotalDto> totalsCreated = reportService.getTotals(from, to, ReportGranularity.MONTH);
+
+    ArchiveResult result = documentArchiveService.archive(LocalDate.of(1990, 3, 1));
+    assertThat(result.documents()).isEqualTo(2);
+    assertThat(result.specifications()).isEqualTo(3);
+
+    DocumentFilter filter = new DocumentFilter(from, to, null, null, null);
+    assertThat(documentService.getDocumentsPage(filter, null, 10, DocumentView.SUMMARY).items())
+            .extracting(DocumentResponseDto::number)
+            .containsExactly("ARC-3");
+    DocumentPage archived = documentService.getArchivedDocumentsPage(
+            new DocumentFilter(LocalDate.of(1990, 2, 1), LocalDate.of(1990, 2, 28), null, null, null), null, 10, DocumentView.FULL);
+    assertThat(archived.items()).extracting(DocumentResponseDto::number).containsExactly("ARC-2");
+    assertThat(archived.items().get(0).specifications()).extracting(SpecificationResponseDto::name).containsExactly("C");
+
+    documentCache.evict(january.document().id());
+    documentCache.evict(february.document().id());
+    assertThat(documentService.getDocumentResponse(january.document().id()).document().specifications()).hasSize(2);
+    assertThat(documentService.getDocumentResponseByNumber("ARC-2").document().id()).isEqualTo(february.document().id());
+    assertThat(documentService.getDocumentVersion(january.document().id())).isEqualTo(january.version());
+    assertThat(reportService.getTotals(from, to, ReportGranularity.MONTH)).isEqualTo(totalsCreated).isNotEqualTo(totalsBefore);
+    List<SpecificationNameTotalDto> topCreated = reportService.getTopSpecifications(from, to, 10);
+    reportService.foldDeltas();
+    reportService.rebuild(from, to);
+    assertThat(reportService.getTotals(from, to, ReportGranularity.MONTH)).isEqualTo(totalsCreated);
+    assertThat(reportService.getTopSpecifications(from, to, 10)).isEqualTo(topCreated);
+
+    assertThatThrownBy(() -> documentService.createDocument(new DocumentDto(null, "ARC-1", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE)))))
+            .isInstanceOf(DuplicateDocumentNumberException.class);
+    assertThat(documentBatchService.createDocuments(List.of(new DocumentDto(null, "ARC-2", LocalDate.now(), null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE))))))
+            .extracting(BatchItemResult::status)
+            .containsExactly(BatchItemStatus.DUPLICATE);
+    assertThatThrownBy(() -> documentService.updateDocument(january.document().id(), new DocumentDto(null, "ARC-1",
+            LocalDate.of(1990, 1, 15), null, "", List.of(new SpecificationDto(null, "A", BigDecimal.ONE))), null))
+            .isInstanceOf(DocumentNotFoundException.class);
+}
+
+@Test
+void shouldReportAndRepairDriftedAmountsWithoutTouchingConsistentDocuments() {
+    LocalDate day = LocalDate.of(1991, 5, 20);
+    CachedDocument drifted = documentService.createDocument(new DocumentDto(null, "REC-1", day, null, "",
+            List.of(new SpecificationDto(null, "A", BigDecimal.ONE), new SpecificationDto(null, "B", BigDecimal.TEN))));
+    CachedDocument consistent = documentService.createDocument(new DocumentDto(null, "REC-2", day, null, "",
+            List.of(new SpecificationDto(null, "C", BigDecimal.valueOf(5)))));
+    List<ReportTotalDto> totals = reportService.getTotals(day, day, ReportGranularity.DAY);
+    documentService.getDocumentResponse(drifted.document().id());
+    jdbcTemplate.update("UPDATE document SET amount = 99 WHERE id = :id", Map.of("id", drifted.document().id()));
+
+    ReconciliationResult report = amountReconciliationService.reconcile(false);
+    assertThat(report.mismatched()).isEqualTo(1);
+    assertThat(report.mismatches())
+            .extracting(AmountMismatch::number, AmountMismatch::amount, AmountMismatch::expectedAmount)
+            .containsExactly(tuple("REC-1", new BigDecimal("99.00"), new BigDecimal("11.00")));
+    assertThat(documentRepository.findById(drifted.document().id()).orElseThrow().getAmount()).isEqualByComparingTo("99");
+
+    ReconciliationResult repaired = amountReconciliationService.reconcile(true);
+    assertThat(repaired.mismatched()).isEqualTo(1);
+    assertThat(documentService.getDocumentResponse(drifted.document().id()).document().amount()).isEqualByComparingTo("11");
+    assertThat(documentService.getDocumentVersion(drifted.document().id())).isEqualTo(drifted.version() + 1);
+    assertThat(documentService.getDocumentVersion(consistent.document().id())).isEqualTo(consistent.version());
+    assertThat(reportService.getTotals(day, day, ReportGranularity.DAY)).isEqualTo(totals);
+
+    assertThat(amountReconciliationService.reconcile(true).mismatched()).isZero();
+}
 }
-}
\ No newline at end of file
@@ -0,0 +1,61 @@
+package ru.docapp.documentapp;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import ru.docapp.documentapp.config.DuplicateLogProperties;
+import ru.docapp.documentapp.dto.DuplicateLogEntry;
+import ru.docapp.documentapp.services.DuplicateLogService;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DuplicateLogServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void shouldDropEntriesWhenBufferIsFullAndFlushRestOnStop() throws Exception {
+        var properties = new DuplicateLogProperties(2, 500, Duration.ofSeconds(1),
+                DuplicateLogProperties.OverflowPolicy.DROP, Duration.ZERO);
+        var service = new DuplicateLogService(jdbcTemplate, properties);
+
+        service.logDuplicate(new DuplicateLogEntry("DOCUMENT", "A", "test"));
+        service.logDuplicate(new DuplicateLogEntry("DOCUMENT", "B", "test"));
+        service.logDuplicate(new DuplicateLogEntry("DOCUMENT", "C", "test"));
+
+        assertThat(service.getDroppedCount()).isEqualTo(1);
+        assertThat(service.getPendingCount()).isEqualTo(2);
+
+        service.stop();
+
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((Collection<?> batch) -> batch.size() == 2), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertThat(service.getWrittenCount()).isEqualTo(2);
+        assertThat(service.getPendingCount()).isZero();
+    }
+
+    @Test
+    void shouldWriteEntriesInBackgroundOnceFlushSizeIsReached() throws Exception {
+        var properties = new DuplicateLogProperties(100, 3, Duration.ofMinutes(1),
+                DuplicateLogProperties.OverflowPolicy.BLOCK, Duration.ofMillis(10));
+        var service = new DuplicateLogService(jdbcTemplate, properties);
+        service.start();
+        try {
+            for (int i = 0; i < 3; i++) {
+                service.logDuplicate(new DuplicateLogEntry("DOCUMENT", "N-" + i, "test"));
+            }
+
+            verify(jdbcTemplate, timeout(5000)).batchUpdate(anyString(),
+                    argThat((Collection<?> batch) -> batch.size() == 3), eq(3),
+                    any(ParameterizedPreparedStatementSetter.class));
+        } finally {
+            service.stop();
+        }
+        assertThat(service.getWrittenCount()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.docapp.documentapp;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.docapp.documentapp.dto.CachedDocument;
+import ru.docapp.documentapp.dto.DocumentDto;
+import ru.docapp.documentapp.dto.SpecificationDto;
+import ru.docapp.documentapp.repositories.DocumentRepository;
+import ru.docapp.documentapp.services.DocumentService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs with a "replica" that is the same database seen through a schema of stale copies, so a read routed to it
+ * returns the rows as they were before the update.
+ */
+@SpringBootTest(properties = {
+        "app.datasource.replica.enabled=true",
+        "app.datasource.replica.url=jdbc:postgresql://localhost:5433/master_detail_db?currentSchema=" + ReplicaCacheTest.STALE
+})
+class ReplicaCacheTest {
+
+    static final String STALE = "stale_replica";
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void createStaleReplica() {
+        documentRepository.findByNumber("REPL-1").ifPresent(documentRepository::delete);
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + STALE + " CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA " + STALE);
+        for (String table : List.of("document", "specification", "archived_document", "document_archive",
+                "specification_archive")) {
+            jdbcTemplate.execute("CREATE TABLE %1$s.%2$s (LIKE public.%2$s)".formatted(STALE, table));
+        }
+    }
+
+    @Test
+    void shouldNotCacheRowsOfALaggingReplicaAfterUpdate() {
+        CachedDocument saved = documentService.createDocument(new DocumentDto(null, "REPL-1", LocalDate.now(), null, "old",
+                List.of(new SpecificationDto(null, "A", BigDecimal.ONE))));
+        Long id = saved.document().id();
+        jdbcTemplate.update("INSERT INTO " + STALE + ".document SELECT * FROM public.document WHERE id = ?", id);
+        jdbcTemplate.update("INSERT INTO " + STALE + ".specification SELECT * FROM public.specification WHERE document_id = ?", id);
+
+        CachedDocument updated = documentService.updateDocument(id, new DocumentDto(null, "REPL-1", saved.document().date(), null, "new",
+                List.of(new SpecificationDto(null, "A", BigDecimal.ONE))), saved.version());
+
+        // the replica has not caught up with the update
+        var readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Long replicaVersion = readOnly.execute(status -> documentRepository.findVersionById(id).orElseThrow());
+        assertThat(replicaVersion).isEqualTo(saved.version());
+
+        assertThat(documentService.getDocumentVersion(id)).isEqualTo(updated.version());
+        CachedDocument loaded = documentService.getDocumentResponse(id);
+        assertThat(loaded.version()).isEqualTo(updated.version());
+        assertThat(loaded.document().note()).isEqualTo("new");
+        assertThat(documentService.getDocumentResponseByNumber("REPL-1").document().note()).isEqualTo("new");
+    }
+}
@@ -0,0 +1,80 @@
+package ru.docapp.documentapp;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.docapp.documentapp.config.ReadYourWritesFilter;
+import ru.docapp.documentapp.config.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+
+    @Test
+    void shouldReadFromReplicaAndFallBackToPrimaryWhileReplicaIsDown() throws Exception {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        var routing = new ReplicaRoutingDataSource(replica, primary, Duration.ofMinutes(1));
+
+        assertThat(routing.getConnection()).isSameAs(replicaConnection);
+
+        when(replica.getConnection()).thenThrow(new SQLException("Connection refused"));
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+        assertThat(routing.isReplicaAvailable()).isFalse();
+
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+        verify(replica, times(2)).getConnection();
+    }
+
+    @Test
+    void shouldReadFromPrimaryAfterClientsOwnWrite() throws Exception {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        var routing = new ReplicaRoutingDataSource(replica, primary, Duration.ofMinutes(1));
+        var filter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+
+        var writeResponse = new MockHttpServletResponse();
+        assertThat(connectionFor(filter, routing, new MockHttpServletRequest("PUT", "/api/documents/1"), writeResponse))
+                .isSameAs(primaryConnection);
+        Cookie cookie = writeResponse.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertThat(cookie).isNotNull();
+
+        var ownRead = new MockHttpServletRequest("GET", "/api/documents/1");
+        ownRead.setCookies(cookie);
+        assertThat(connectionFor(filter, routing, ownRead, new MockHttpServletResponse()))
+                .isSameAs(primaryConnection);
+
+        var otherRead = new MockHttpServletRequest("GET", "/api/documents/1");
+        assertThat(connectionFor(filter, routing, otherRead, new MockHttpServletResponse()))
+                .isSameAs(replicaConnection);
+        assertThat(ReadYourWritesFilter.primaryRequired()).isFalse();
+    }
+
+    private static Connection connectionFor(ReadYourWritesFilter filter, DataSource routing,
+                                            MockHttpServletRequest request, MockHttpServletResponse response)
+            throws Exception {
+        AtomicReference<Connection> used = new AtomicReference<>();
+        filter.doFilter(request, response, (req, res) -> {
+            try {
+                used.set(routing.getConnection());
+            } catch (SQLException e) {
+                throw new ServletException(e);
+            }
+        });
+        return used.get();
+    }
+}